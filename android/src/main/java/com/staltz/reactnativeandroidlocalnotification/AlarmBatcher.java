@@ -0,0 +1,275 @@
+package com.staltz.reactnativeandroidlocalnotification;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Aligns the windows of tolerant alarms so the system can batch them.
+ *
+ * The delivery windows of the armed one-time tolerant alarms are kept in the
+ * store, and indexed by start in memory. When a new window overlaps an armed
+ * one, the new alarm is armed on the intersection with the one it overlaps the
+ * most: it lies inside the unchanged armed window, so both can be delivered
+ * with a single wakeup. Counters of the alarms armed by kind and of the
+ * wakeups saved are kept for reporting, re-arming an alarm on the window it
+ * was already aligned on is not counted again.
+ */
+public class AlarmBatcher {
+    final static String PREFERENCES_KEY = "ReactNativeSystemNotificationAlarms";
+
+    final static String EXACT_ALARMS = "stats:exactAlarms";
+    final static String WINDOWED_ALARMS = "stats:windowedAlarms";
+    final static String INEXACT_REPEATING_ALARMS = "stats:inexactRepeatingAlarms";
+    final static String WAKEUPS_SAVED = "stats:wakeupsSaved";
+
+    private final static String WINDOW_PREFIX = "window:";
+    private final static String SAVED_PREFIX = "saved:";
+
+    // Delivered windows are dropped at most this often
+    private final static long PURGE_INTERVAL = 60 * 1000;
+
+    private final static Object lock = new Object();
+
+    // Armed windows as { start, end, id }, by start then id, and by id
+    private final static TreeSet<long[]> windowsByStart = new TreeSet<>(new Comparator<long[]>() {
+        @Override
+        public int compare(long[] a, long[] b) {
+            return a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[2], b[2]);
+        }
+    });
+    private final static Map<Integer, long[]> windows = new HashMap<>();
+
+    // The aligned window last counted as a saved wakeup, by id
+    private final static Map<Integer, long[]> savedWindows = new HashMap<>();
+
+    // Version of the store the windows were loaded at, -1 until they are
+    private static long loadedVersion = -1;
+    private static long maxLength = 0;
+    private static long purgedAt = 0;
+
+    private final NotificationStore store;
+
+    public AlarmBatcher(Context context) {
+        this.store = NotificationStore.getInstance(context, PREFERENCES_KEY);
+    }
+
+    /**
+     * Register the window of a tolerant one-time alarm, in wall clock time.
+     * Returns the window to arm it on, as { start, length }.
+     */
+    public long[] align(int notificationID, long start, long length) {
+        synchronized (lock) {
+            return alignWindow(notificationID, start, length);
+        }
+    }
+
+    private long[] alignWindow(int notificationID, long start, long length) {
+        long now = System.currentTimeMillis();
+        long end = start + length;
+
+        loadIndex();
+        purge(now);
+        removeWindow(notificationID);
+
+        // Only windows starting less than the longest length before can overlap
+        long[] from = { start - maxLength, 0, Long.MIN_VALUE };
+        long[] to = { end, 0, Long.MAX_VALUE };
+        long[] partner = null;
+        long partnerOverlap = -1;
+
+        for (long[] window : windowsByStart.subSet(from, true, to, true)) {
+            long overlap = Math.min(end, window[1]) - Math.max(start, window[0]);
+
+            if (window[1] >= now && overlap > partnerOverlap) {
+                partner = window;
+                partnerOverlap = overlap;
+            }
+        }
+
+        if (partner != null) {
+            start = Math.max(start, partner[0]);
+            end = Math.min(end, partner[1]);
+        }
+
+        putWindow(notificationID, start, end);
+        increment(WINDOWED_ALARMS);
+
+        long[] saved = savedWindows.get(notificationID);
+
+        if (partner != null && (saved == null || saved[0] != start || saved[1] != end)) {
+            savedWindows.put(notificationID, new long[] { start, end, notificationID });
+            putEntry(SAVED_PREFIX + notificationID, start + ":" + end);
+            increment(WAKEUPS_SAVED);
+
+            Logger.i("AlarmBatcher: Alarm Merged: {}, With: {}, Window: {} - {}", notificationID, partner[2], start,
+                    end);
+        }
+
+        return new long[] { start, end - start };
+    }
+
+    /**
+     * Forget the window of an alarm that was delivered or canceled.
+     */
+    public void remove(int notificationID) {
+        synchronized (lock) {
+            loadIndex();
+            removeWindow(notificationID);
+        }
+    }
+
+    public void countWindowed() {
+        increment(WINDOWED_ALARMS);
+    }
+
+    public void countExact() {
+        increment(EXACT_ALARMS);
+    }
+
+    public void countInexactRepeating() {
+        increment(INEXACT_REPEATING_ALARMS);
+    }
+
+    public int getCount(String counter) {
+        return store.getInt(counter, 0);
+    }
+
+    private void increment(String counter) {
+        synchronized (lock) {
+            putEntry(counter, Integer.toString(store.getInt(counter, 0) + 1));
+        }
+    }
+
+    /**
+     * Load the windows from the store, again when another process changed it.
+     * The lock must be held.
+     */
+    private void loadIndex() {
+        long version = store.getVersion();
+
+        if (version == loadedVersion) {
+            return;
+        }
+
+        windows.clear();
+        windowsByStart.clear();
+        savedWindows.clear();
+        maxLength = 0;
+
+        for (Map.Entry<String, String> entry : store.getAll().entrySet()) {
+            boolean window = entry.getKey().startsWith(WINDOW_PREFIX);
+            boolean saved = entry.getKey().startsWith(SAVED_PREFIX);
+
+            if (!window && !saved) {
+                continue;
+            }
+
+            long[] bounds = parseWindow(entry.getValue());
+
+            if (bounds == null) {
+                removeEntry(entry.getKey());
+                continue;
+            }
+
+            String prefix = window ? WINDOW_PREFIX : SAVED_PREFIX;
+            int id = Integer.parseInt(entry.getKey().substring(prefix.length()));
+
+            if (window) {
+                indexWindow(id, bounds[0], bounds[1]);
+            } else {
+                savedWindows.put(id, new long[] { bounds[0], bounds[1], id });
+            }
+        }
+
+        loadedVersion = version;
+    }
+
+    /**
+     * Drop the windows that are already delivered. The lock must be held.
+     */
+    private void purge(long now) {
+        if (now - purgedAt < PURGE_INTERVAL) {
+            return;
+        }
+
+        purgedAt = now;
+
+        for (long[] window : new ArrayList<>(windows.values())) {
+            if (window[1] < now) {
+                removeWindow((int) window[2]);
+            }
+        }
+
+        Iterator<long[]> saved = savedWindows.values().iterator();
+        while (saved.hasNext()) {
+            long[] window = saved.next();
+
+            if (window[1] < now) {
+                saved.remove();
+                removeEntry(SAVED_PREFIX + window[2]);
+            }
+        }
+    }
+
+    private void putWindow(int notificationID, long start, long end) {
+        indexWindow(notificationID, start, end);
+        putEntry(WINDOW_PREFIX + notificationID, start + ":" + end);
+    }
+
+    private static void indexWindow(int notificationID, long start, long end) {
+        long[] window = { start, end, notificationID };
+
+        windows.put(notificationID, window);
+        windowsByStart.add(window);
+        maxLength = Math.max(maxLength, end - start);
+    }
+
+    private void removeWindow(int notificationID) {
+        long[] window = windows.remove(notificationID);
+
+        if (window != null) {
+            windowsByStart.remove(window);
+            removeEntry(WINDOW_PREFIX + notificationID);
+        }
+    }
+
+    /**
+     * Write to the store, the windows stay loaded through the writes of this
+     * process. The lock must be held.
+     */
+    private void putEntry(String key, String value) {
+        boolean upToDate = store.getVersion() == loadedVersion;
+
+        store.put(key, value);
+
+        if (upToDate) {
+            loadedVersion = store.getVersion();
+        }
+    }
+
+    private void removeEntry(String key) {
+        boolean upToDate = store.getVersion() == loadedVersion;
+
+        store.remove(key);
+
+        if (upToDate) {
+            loadedVersion = store.getVersion();
+        }
+    }
+
+    private static long[] parseWindow(String value) {
+        try {
+            int separator = value.indexOf(':');
+            return new long[] { Long.parseLong(value.substring(0, separator)),
+                    Long.parseLong(value.substring(separator + 1)) };
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
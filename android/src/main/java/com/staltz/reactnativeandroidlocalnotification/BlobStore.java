@@ -0,0 +1,281 @@
+package com.staltz.reactnativeandroidlocalnotification;
+
+import android.content.Context;
+import android.util.LruCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A content-addressed store for large notification attributes.
+ *
+ * Each blob is written once under the SHA-1 hash of its content and shared by
+ * every record that references it. References are counted, blobs that are no
+ * longer referenced are removed by the garbage collector.
+ */
+public class BlobStore {
+    final static String PREFERENCES_KEY = "ReactNativeSystemNotificationBlobs";
+    final static String DIRECTORY_NAME = "ReactNativeSystemNotificationBlobs";
+
+    /**
+     * Values shorter than this (in chars) are kept inline in the records.
+     */
+    final static int INLINE_LIMIT = 1024;
+
+    private final static int CACHE_SIZE = 512 * 1024;
+
+    /**
+     * Blobs used more recently than this are not collected, another process may
+     * hold a reference that is not committed yet.
+     */
+    private final static long GRACE_PERIOD = 60 * 1000;
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static BlobStore instance = null;
+
+    private final File directory;
+    private final NotificationStore referenceCounts;
+    private final LruCache<String, String> cache;
+
+    private BlobStore(Context context) {
+        this.directory = new File(context.getFilesDir(), DIRECTORY_NAME);
+        this.referenceCounts = NotificationStore.getInstance(context, PREFERENCES_KEY);
+        this.cache = new LruCache<String, String>(CACHE_SIZE) {
+            @Override
+            protected int sizeOf(String hash, String content) {
+                return content.length();
+            }
+        };
+    }
+
+    static synchronized BlobStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new BlobStore(context.getApplicationContext());
+        }
+
+        return instance;
+    }
+
+    /**
+     * Whether a value is large enough to be stored out-of-line.
+     */
+    static boolean shouldStore(String content) {
+        return content != null && content.length() >= INLINE_LIMIT;
+    }
+
+    /**
+     * Store a blob and take a reference on it, returns its hash.
+     */
+    public synchronized String put(String content) {
+        String hash = hash(content);
+        File file = getFile(hash);
+
+        if (!file.exists()) {
+            write(file, content);
+        } else {
+            file.setLastModified(System.currentTimeMillis());
+        }
+
+        cache.put(hash, content);
+        setReferenceCount(hash, getReferenceCount(hash) + 1);
+
+        return hash;
+    }
+
+    /**
+     * Get the content of a blob, null if it does not exist.
+     */
+    public synchronized String get(String hash) {
+        if (hash == null) {
+            return null;
+        }
+
+        String content = cache.get(hash);
+
+        if (content == null) {
+            content = read(getFile(hash));
+            if (content != null) {
+                cache.put(hash, content);
+            }
+        }
+
+        return content;
+    }
+
+    /**
+     * Take a reference on an existing blob.
+     */
+    public synchronized void acquire(String hash) {
+        if (hash == null) {
+            return;
+        }
+
+        getFile(hash).setLastModified(System.currentTimeMillis());
+        setReferenceCount(hash, getReferenceCount(hash) + 1);
+    }
+
+    /**
+     * Drop a reference on a blob. Blobs without references are kept on disk
+     * until the next garbage collection.
+     */
+    public synchronized void release(String hash) {
+        if (hash == null) {
+            return;
+        }
+
+        setReferenceCount(hash, Math.max(0, getReferenceCount(hash) - 1));
+    }
+
+    /**
+     * Delete the blobs that are no longer referenced, and the files that have
+     * no reference count at all (e.g. left over by a crash).
+     *
+     * Returns the number of deleted blobs.
+     */
+    public synchronized int collectGarbage() {
+        Map<String, String> counts = referenceCounts.getAll();
+        Set<String> garbage = new HashSet<>();
+
+        for (String hash : counts.keySet()) {
+            if (referenceCounts.getInt(hash, 0) <= 0) {
+                garbage.add(hash);
+            }
+        }
+
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!counts.containsKey(file.getName())) {
+                    garbage.add(file.getName());
+                }
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        int collected = 0;
+
+        for (String hash : garbage) {
+            File file = getFile(hash);
+
+            if (file.exists() && now - file.lastModified() < GRACE_PERIOD) {
+                continue;
+            }
+
+            file.delete();
+            cache.remove(hash);
+            referenceCounts.remove(hash);
+            collected++;
+        }
+
+        if (collected > 0) {
+            Logger.i("BlobStore: Garbage Collected: {} blobs", collected);
+        }
+
+        return collected;
+    }
+
+    private int getReferenceCount(String hash) {
+        return referenceCounts.getInt(hash, 0);
+    }
+
+    private void setReferenceCount(String hash, int count) {
+        referenceCounts.putInt(hash, count);
+    }
+
+    private File getFile(String hash) {
+        return new File(directory, hash);
+    }
+
+    private void write(File file, String content) {
+        File temporary = new File(directory, file.getName() + ".tmp");
+        FileOutputStream outputStream = null;
+
+        try {
+            directory.mkdirs();
+            outputStream = new FileOutputStream(temporary);
+            outputStream.write(content.getBytes(UTF_8));
+            outputStream.getFD().sync();
+            outputStream.close();
+            outputStream = null;
+
+            if (!temporary.renameTo(file)) {
+                throw new IOException("Cannot rename " + temporary + " to " + file);
+            }
+
+        } catch (IOException e) {
+            Logger.e("BlobStore: write Error: {}", e);
+            temporary.delete();
+
+        } finally {
+            closeQuietly(outputStream);
+        }
+    }
+
+    private String read(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        InputStream inputStream = null;
+
+        try {
+            inputStream = new FileInputStream(file);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int count;
+
+            while ((count = inputStream.read(buffer)) != -1) {
+                bytes.write(buffer, 0, count);
+            }
+
+            return new String(bytes.toByteArray(), UTF_8);
+
+        } catch (IOException e) {
+            Logger.e("BlobStore: read Error: {}", e);
+            return null;
+
+        } finally {
+            closeQuietly(inputStream);
+        }
+    }
+
+    static String hash(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(content.getBytes(UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+
+            return hex.toString();
+
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Ignored
+        }
+    }
+}
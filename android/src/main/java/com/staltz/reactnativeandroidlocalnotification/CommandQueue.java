@@ -0,0 +1,256 @@
+package com.staltz.reactnativeandroidlocalnotification;
+
+import android.os.Process;
+
+import com.facebook.react.bridge.Promise;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The executor of the commands of the JS module.
+ *
+ * Commands run on threads of their own, never on the thread shared by the
+ * native modules, and settle a Promise. Reads run in parallel. Writes to a
+ * notification are serialized in a lane per id, writes to different ones run
+ * in parallel. Writes to all notifications (sync, deleteAll...) run alone.
+ * A command can be cancelled until it starts, by the request id JS gave it.
+ */
+public class CommandQueue {
+    final static String E_CANCELLED = "E_CANCELLED";
+    final static String E_COMMAND = "E_COMMAND";
+
+    private final static int THREADS = 3;
+
+    /**
+     * The body of a command, returns the value the Promise is resolved with.
+     */
+    interface Command {
+        Object run() throws Exception;
+    }
+
+    private final static int QUEUED = 0;
+    private final static int RUNNING = 1;
+    private final static int CANCELLED = 2;
+
+    private final ExecutorService executor;
+    private final ReentrantReadWriteLock allLock = new ReentrantReadWriteLock(true);
+    private final Map<Integer, ArrayDeque<Task>> lanes = new HashMap<>();
+    private final Map<String, Task> pending = new ConcurrentHashMap<>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger cancelled = new AtomicInteger();
+    private final AtomicInteger maxQueued = new AtomicInteger();
+
+    public CommandQueue() {
+        final AtomicInteger threadCount = new AtomicInteger();
+
+        this.executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, "ReactSystemNotificationCommand-" + threadCount.incrementAndGet());
+                    }
+                });
+
+        ((ThreadPoolExecutor) executor).allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Run a command that only reads, in parallel with the other reads and the
+     * writes to a single notification.
+     */
+    public void read(String requestID, Promise promise, Command command) {
+        submit(new Task(requestID, promise, command, null, false));
+    }
+
+    /**
+     * Run a command that writes a notification, after the writes to the same
+     * notification queued before it.
+     */
+    public void write(String requestID, int notificationID, Promise promise, Command command) {
+        Task task = new Task(requestID, promise, command, notificationID, false);
+        boolean first;
+
+        synchronized (lanes) {
+            ArrayDeque<Task> lane = lanes.get(notificationID);
+            first = lane == null;
+
+            if (first) {
+                lane = new ArrayDeque<>();
+                lanes.put(notificationID, lane);
+            }
+            lane.add(task);
+        }
+
+        if (first) {
+            submit(task);
+        } else {
+            enqueue(task);
+        }
+    }
+
+    /**
+     * Run a command that writes many notifications, once every command that
+     * started before it is done and before any other starts.
+     */
+    public void writeAll(String requestID, Promise promise, Command command) {
+        submit(new Task(requestID, promise, command, null, true));
+    }
+
+    /**
+     * Cancel a command that did not start yet, its Promise is rejected.
+     * Returns false if it started, finished or is unknown.
+     */
+    public boolean cancel(String requestID) {
+        Task task = requestID != null ? pending.get(requestID) : null;
+
+        if (task == null || !task.state.compareAndSet(QUEUED, CANCELLED)) {
+            return false;
+        }
+
+        pending.remove(requestID);
+        queued.decrementAndGet();
+        cancelled.incrementAndGet();
+        task.promise.reject(E_CANCELLED, "Command cancelled");
+
+        Logger.i("CommandQueue: Command Cancelled: {}", requestID);
+
+        return true;
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public int getRunning() {
+        return running.get();
+    }
+
+    public int getCompleted() {
+        return completed.get();
+    }
+
+    public int getCancelled() {
+        return cancelled.get();
+    }
+
+    public int getMaxQueued() {
+        return maxQueued.get();
+    }
+
+    private void enqueue(Task task) {
+        task.enqueued = true;
+
+        if (task.requestID != null) {
+            pending.put(task.requestID, task);
+        }
+
+        int depth = queued.incrementAndGet();
+        int max;
+        while (depth > (max = maxQueued.get()) && !maxQueued.compareAndSet(max, depth)) {
+            // Raced with another command, retry
+        }
+    }
+
+    private void submit(Task task) {
+        if (!task.enqueued) {
+            enqueue(task);
+        }
+        executor.execute(task);
+    }
+
+    /**
+     * Start the next command of the lane of a notification.
+     */
+    private void advanceLane(int notificationID) {
+        Task next;
+
+        synchronized (lanes) {
+            ArrayDeque<Task> lane = lanes.get(notificationID);
+            lane.poll();
+            next = lane.peek();
+
+            if (next == null) {
+                lanes.remove(notificationID);
+            }
+        }
+
+        if (next != null) {
+            submit(next);
+        }
+    }
+
+    private class Task implements Runnable {
+        final String requestID;
+        final Promise promise;
+        final Command command;
+        final Integer notificationID;
+        final boolean exclusive;
+        final AtomicInteger state = new AtomicInteger(QUEUED);
+        boolean enqueued = false;
+
+        Task(String requestID, Promise promise, Command command, Integer notificationID, boolean exclusive) {
+            this.requestID = requestID;
+            this.promise = promise;
+            this.command = command;
+            this.notificationID = notificationID;
+            this.exclusive = exclusive;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (state.compareAndSet(QUEUED, RUNNING)) {
+                    execute();
+                }
+            } finally {
+                if (notificationID != null) {
+                    advanceLane(notificationID);
+                }
+            }
+        }
+
+        private void execute() {
+            if (requestID != null) {
+                pending.remove(requestID);
+            }
+            queued.decrementAndGet();
+            running.incrementAndGet();
+
+            Lock lock = exclusive ? allLock.writeLock() : allLock.readLock();
+            lock.lock();
+
+            try {
+                promise.resolve(command.run());
+
+            } catch (Throwable e) {
+                promise.reject(E_COMMAND, e.getMessage(), e);
+                Logger.e("CommandQueue: {} Error: {}", requestID, e);
+
+            } finally {
+                lock.unlock();
+                running.decrementAndGet();
+                completed.incrementAndGet();
+            }
+        }
+    }
+}
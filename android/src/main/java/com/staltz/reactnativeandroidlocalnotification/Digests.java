@@ -0,0 +1,343 @@
+package com.staltz.reactnativeandroidlocalnotification;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.text.Html;
+
+import com.google.gson.Gson;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Collects the notifications of a category or group into periodic digests.
+ *
+ * A digest rule holds the notifications of its category or group for a
+ * window, or during quiet hours. The held notifications are buffered in the
+ * store and a single flush alarm is armed per digest, when it fires all of
+ * them are posted as one inbox style notification.
+ */
+public class Digests {
+    final static String PREFERENCES_KEY = "ReactNativeSystemNotificationDigests";
+
+    private final static String RULE_PREFIX = "rule:";
+    private final static String ITEM_PREFIX = "item:";
+    private final static String FLUSH_PREFIX = "flush:";
+
+    // Lines shown in a digest
+    private final static int DIGEST_LINES = 5;
+
+    private final static Object lock = new Object();
+
+    private final Context context;
+    private final NotificationStore store;
+
+    public Digests(Context context) {
+        this.context = context;
+        this.store = NotificationStore.getInstance(context, PREFERENCES_KEY);
+    }
+
+    /**
+     * Set the digest rule of a category or group. Notifications are held for
+     * window milliseconds, and between quietStart and quietEnd (minutes of the
+     * day, -1 for no quiet hours).
+     */
+    public void setRule(String key, long window, int quietStart, int quietEnd) {
+        Rule rule = new Rule();
+        rule.window = window;
+        rule.quietStart = quietStart;
+        rule.quietEnd = quietEnd;
+
+        store.put(RULE_PREFIX + key, new Gson().toJson(rule));
+    }
+
+    /**
+     * Remove the digest rule of a category or group, posts what it holds.
+     */
+    public void removeRule(String key) {
+        store.remove(RULE_PREFIX + key);
+        flush(key);
+    }
+
+    /**
+     * Hold a notification that is about to be posted if a digest rule applies
+     * to it. Returns false if it should be posted now.
+     */
+    public boolean offer(Notification notification) {
+        NotificationAttributes attributes = notification.getAttributes();
+        String key = null;
+        Rule rule = null;
+
+        if (attributes.getCategory() != null) {
+            rule = getRule(attributes.getCategory());
+            key = attributes.getCategory();
+        }
+
+        if (rule == null && attributes.getGroup() != null) {
+            rule = getRule(attributes.getGroup());
+            key = attributes.getGroup();
+        }
+
+        if (rule == null) {
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        long flushAt = Math.max(rule.window > 0 ? now + rule.window : now, rule.quietHoursEnd(now));
+
+        if (flushAt <= now) {
+            return false;
+        }
+
+        Item item = new Item();
+        item.id = notification.getId();
+        item.time = now;
+        item.subject = attributes.getSubject();
+        item.message = attributes.getMessage();
+        item.smallIcon = attributes.getSmallIcon();
+        item.channelID = attributes.getChannelID();
+        item.channelName = attributes.getChannelName();
+        item.color = attributes.getColor();
+
+        synchronized (lock) {
+            store.put(ITEM_PREFIX + key + ":" + item.id, new Gson().toJson(item));
+
+            // One flush alarm per digest, armed by its first item
+            if (store.getString(FLUSH_PREFIX + key) == null) {
+                store.put(FLUSH_PREFIX + key, Long.toString(flushAt));
+                setFlushAlarm(key, flushAt);
+            }
+        }
+
+        Logger.i("Digests: Notification Held: {}, Digest: {}", item.id, key);
+
+        return true;
+    }
+
+    /**
+     * Forget a held notification that is deleted or cleared.
+     */
+    public void remove(int notificationID) {
+        synchronized (lock) {
+            for (String key : store.keys()) {
+                if (key.startsWith(ITEM_PREFIX) && key.endsWith(":" + notificationID)) {
+                    store.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Post the notifications held by a digest as one notification.
+     */
+    public void flush(String key) {
+        ArrayList<Item> items = new ArrayList<>();
+        String prefix = ITEM_PREFIX + key + ":";
+
+        synchronized (lock) {
+            for (Map.Entry<String, String> entry : store.getAll().entrySet()) {
+                if (!entry.getKey().startsWith(prefix)) {
+                    continue;
+                }
+
+                try {
+                    items.add(new Gson().fromJson(entry.getValue(), Item.class));
+                } catch (Exception e) {
+                    Logger.e("Digests: flush Error: {}", entry.getKey());
+                }
+
+                store.remove(entry.getKey());
+            }
+
+            store.remove(FLUSH_PREFIX + key);
+            getAlarmManager().cancel(getFlushIntent(key));
+        }
+
+        if (items.isEmpty()) {
+            return;
+        }
+
+        Collections.sort(items, new Comparator<Item>() {
+            @Override
+            public int compare(Item a, Item b) {
+                return a.time < b.time ? -1 : (a.time == b.time ? 0 : 1);
+            }
+        });
+
+        Item latest = items.get(items.size() - 1);
+        ArrayList<String> lines = new ArrayList<>();
+
+        for (int i = Math.max(0, items.size() - DIGEST_LINES); i < items.size(); i++) {
+            lines.add(items.get(i).line());
+        }
+
+        NotificationAttributes digest = new NotificationAttributes();
+        digest.setId(getDigestID(key));
+        digest.setSubject(items.size() + " notifications");
+        digest.setMessage(latest.text());
+        digest.setSmallIcon(latest.smallIcon);
+        digest.setChannelID(latest.channelID);
+        digest.setChannelName(latest.channelName);
+        digest.setColor(latest.color);
+        digest.setNumber(items.size());
+        digest.setDelayed(false);
+        digest.setScheduled(false);
+        digest.setAutoClear(true);
+        digest.setInboxStyle(true);
+        digest.setInboxStyleBigContentTitle(digest.getSubject());
+        digest.setInboxStyleSummaryText(key);
+        digest.setInboxStyleLines(lines);
+
+        new Notification(context, digest.getId(), digest).setTag(getDigestTag(key)).show();
+
+        Logger.i("Digests: Digest Posted: {}, Notifications: {}", key, items.size());
+    }
+
+    /**
+     * Arm the flush alarms again, after the system rebooted.
+     */
+    public void rearm() {
+        for (Map.Entry<String, String> entry : store.getAll().entrySet()) {
+            if (!entry.getKey().startsWith(FLUSH_PREFIX)) {
+                continue;
+            }
+
+            try {
+                setFlushAlarm(entry.getKey().substring(FLUSH_PREFIX.length()), Long.parseLong(entry.getValue()));
+            } catch (Exception e) {
+                Logger.e("Digests: rearm Error: {}", entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Get the id of the notification a digest is posted as.
+     */
+    static int getDigestID(String key) {
+        return ("digest:" + key).hashCode() | Integer.MIN_VALUE;
+    }
+
+    /**
+     * Get the tag a digest is posted under, its id does not collide with the
+     * ids of the app, of group summaries or of other digests.
+     */
+    static String getDigestTag(String key) {
+        return "digest:" + key;
+    }
+
+    private Rule getRule(String key) {
+        String json = store.getString(RULE_PREFIX + key);
+
+        try {
+            return json != null ? new Gson().fromJson(json, Rule.class) : null;
+        } catch (Exception e) {
+            Logger.e("Digests: getRule Error: {}", key);
+            return null;
+        }
+    }
+
+    private void setFlushAlarm(String key, long flushAt) {
+        // Digests are not urgent, let the system batch the wakeup
+        getAlarmManager().set(AlarmManager.RTC_WAKEUP, flushAt, getFlushIntent(key));
+
+        Logger.i("Digests: Flush Alarm Set: {}, Flush At: {}", key, flushAt);
+    }
+
+    private PendingIntent getFlushIntent(String key) {
+        Intent intent = new Intent(context, NotificationPublisher.class);
+        intent.putExtra(NotificationPublisher.DIGEST, key);
+
+        // Use a different action per digest so their intents do not replace each other
+        intent.setAction(NotificationPublisher.DIGEST + ":" + key);
+
+        return PendingIntent.getBroadcast(context, getDigestID(key), intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    private AlarmManager getAlarmManager() {
+        return (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+    }
+
+    /**
+     * When to hold the notifications of a category or group.
+     */
+    static class Rule {
+        long window;
+        int quietStart = -1;
+        int quietEnd = -1;
+
+        /**
+         * Get the end of the quiet hours the time is in, or 0 if it is not in
+         * quiet hours.
+         */
+        long quietHoursEnd(long time) {
+            if (quietStart < 0 || quietEnd < 0 || quietStart == quietEnd) {
+                return 0;
+            }
+
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(time);
+            int minute = calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE);
+
+            // Quiet hours may span midnight, e.g. 22:00 - 07:00
+            boolean quiet = quietStart < quietEnd ? minute >= quietStart && minute < quietEnd
+                    : minute >= quietStart || minute < quietEnd;
+
+            if (!quiet) {
+                return 0;
+            }
+
+            calendar.set(Calendar.HOUR_OF_DAY, quietEnd / 60);
+            calendar.set(Calendar.MINUTE, quietEnd % 60);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+
+            if (calendar.getTimeInMillis() <= time) {
+                calendar.add(Calendar.DAY_OF_MONTH, 1);
+            }
+
+            return calendar.getTimeInMillis();
+        }
+    }
+
+    /**
+     * A notification held by a digest.
+     */
+    static class Item {
+        int id;
+        long time;
+        String subject;
+        String message;
+        String smallIcon;
+        String channelID;
+        String channelName;
+        String color;
+
+        /**
+         * Get the inbox line, as HTML with the subject in bold.
+         */
+        String line() {
+            if (subject == null) {
+                return message != null ? Html.escapeHtml(message) : "";
+            }
+
+            return message != null ? "<b>" + Html.escapeHtml(subject) + "</b> " + Html.escapeHtml(message)
+                    : Html.escapeHtml(subject);
+        }
+
+        /**
+         * Get the line as plain text, for the content text.
+         */
+        String text() {
+            if (subject == null) {
+                return message != null ? message : "";
+            }
+
+            return message != null ? subject + " " + message : subject;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.staltz.reactnativeandroidlocalnotification;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A fixed-width table of how many times each notification fired.
+ *
+ * Each slot holds a notification id, its fire count and the time it last
+ * fired, and is updated in place, so counting a fire never rewrites the
+ * notification record. The table file is locked while it is read or written,
+ * it can be shared between processes.
+ */
+public class FireCounters {
+    final static String FILE_NAME = "ReactNativeSystemNotificationCounters.table";
+
+    private final static int SLOT_SIZE = 16;
+    private final static int SLOT_ID = 0;
+    private final static int SLOT_FIRES = 4;
+    private final static int SLOT_LAST_FIRED = 8;
+
+    // Fire count of the slots that are free
+    private final static int FREE = -1;
+
+    private static FireCounters instance = null;
+
+    private FileChannel channel = null;
+    private final Map<Integer, Integer> slots = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private long scannedLength = -1;
+
+    private FireCounters(Context context) {
+        File directory = new File(context.getFilesDir(), NotificationStore.DIRECTORY_NAME);
+
+        try {
+            directory.mkdirs();
+            channel = new RandomAccessFile(new File(directory, FILE_NAME), "rw").getChannel();
+        } catch (IOException e) {
+            Logger.e("FireCounters: open Error: {}", e);
+        }
+    }
+
+    static synchronized FireCounters getInstance(Context context) {
+        if (instance == null) {
+            instance = new FireCounters(context.getApplicationContext());
+        }
+
+        return instance;
+    }
+
+    /**
+     * Count a fire of a notification, returns its fire count.
+     */
+    public synchronized int increment(int notificationID, long now) {
+        if (channel == null) {
+            return 0;
+        }
+
+        FileLock lock = null;
+
+        try {
+            lock = channel.lock();
+
+            int slot = findSlot(notificationID, true);
+            ByteBuffer buffer = readSlot(slot);
+            int fires = buffer.getInt(SLOT_FIRES) + 1;
+
+            buffer.clear();
+            buffer.putInt(SLOT_ID, notificationID);
+            buffer.putInt(SLOT_FIRES, fires);
+            buffer.putLong(SLOT_LAST_FIRED, now);
+            channel.write(buffer, (long) slot * SLOT_SIZE);
+
+            return fires;
+
+        } catch (IOException e) {
+            Logger.e("FireCounters: increment Error: {}", e);
+            return 0;
+
+        } finally {
+            releaseQuietly(lock);
+        }
+    }
+
+    /**
+     * Get the fire count of a notification.
+     */
+    public synchronized int getFires(int notificationID) {
+        long[] counter = get(notificationID);
+        return counter != null ? (int) counter[0] : 0;
+    }
+
+    /**
+     * Get the fire count and last fire time of a notification, null if it
+     * never fired.
+     */
+    public synchronized long[] get(int notificationID) {
+        if (channel == null) {
+            return null;
+        }
+
+        FileLock lock = null;
+
+        try {
+            lock = channel.lock(0, Long.MAX_VALUE, true);
+
+            int slot = findSlot(notificationID, false);
+            if (slot < 0) {
+                return null;
+            }
+
+            ByteBuffer buffer = readSlot(slot);
+            return new long[] { buffer.getInt(SLOT_FIRES), buffer.getLong(SLOT_LAST_FIRED) };
+
+        } catch (IOException e) {
+            Logger.e("FireCounters: get Error: {}", e);
+            return null;
+
+        } finally {
+            releaseQuietly(lock);
+        }
+    }
+
+    /**
+     * Get all the counters, as { notification id, fire count, last fire time }.
+     */
+    public synchronized List<long[]> getAll() {
+        List<long[]> counters = new ArrayList<>();
+
+        if (channel == null) {
+            return counters;
+        }
+
+        FileLock lock = null;
+
+        try {
+            lock = channel.lock(0, Long.MAX_VALUE, true);
+            ByteBuffer table = scan();
+
+            for (int slot = 0; slot < table.limit() / SLOT_SIZE; slot++) {
+                int fires = table.getInt(slot * SLOT_SIZE + SLOT_FIRES);
+
+                if (fires != FREE) {
+                    counters.add(new long[] { table.getInt(slot * SLOT_SIZE + SLOT_ID), fires,
+                            table.getLong(slot * SLOT_SIZE + SLOT_LAST_FIRED) });
+                }
+            }
+
+        } catch (IOException e) {
+            Logger.e("FireCounters: getAll Error: {}", e);
+
+        } finally {
+            releaseQuietly(lock);
+        }
+
+        return counters;
+    }
+
+    /**
+     * Forget the counter of a notification and free its slot, e.g. when it is
+     * created again or deleted.
+     */
+    public synchronized void reset(int notificationID) {
+        if (channel == null) {
+            return;
+        }
+
+        FileLock lock = null;
+
+        try {
+            lock = channel.lock();
+
+            int slot = findSlot(notificationID, false);
+            if (slot < 0) {
+                return;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(4);
+            buffer.putInt(0, FREE);
+            channel.write(buffer, (long) slot * SLOT_SIZE + SLOT_FIRES);
+
+            slots.remove(notificationID);
+            freeSlots.push(slot);
+
+        } catch (IOException e) {
+            Logger.e("FireCounters: reset Error: {}", e);
+
+        } finally {
+            releaseQuietly(lock);
+        }
+    }
+
+    /**
+     * Find the slot of a notification, allocating one if asked to. Returns -1 if
+     * it has none. The file lock must be held.
+     */
+    private int findSlot(int notificationID, boolean allocate) throws IOException {
+        Integer slot = slots.get(notificationID);
+
+        // Another process may have freed or reused the slot, or added one
+        if ((slot != null && !isSlotOf(slot, notificationID)) || (slot == null && channel.size() != scannedLength)) {
+            scan();
+            slot = slots.get(notificationID);
+        }
+
+        if (slot != null || !allocate) {
+            return slot != null ? slot : -1;
+        }
+
+        while (!freeSlots.isEmpty()) {
+            int free = freeSlots.pop();
+
+            if (readSlot(free).getInt(SLOT_FIRES) == FREE) {
+                slot = free;
+                break;
+            }
+        }
+
+        if (slot == null) {
+            slot = (int) (channel.size() / SLOT_SIZE);
+            scannedLength = (long) (slot + 1) * SLOT_SIZE;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(SLOT_SIZE);
+        buffer.putInt(SLOT_ID, notificationID);
+        buffer.putInt(SLOT_FIRES, 0);
+        buffer.putLong(SLOT_LAST_FIRED, 0);
+        channel.write(buffer, (long) slot * SLOT_SIZE);
+
+        slots.put(notificationID, slot);
+
+        return slot;
+    }
+
+    private boolean isSlotOf(int slot, int notificationID) throws IOException {
+        ByteBuffer buffer = readSlot(slot);
+        return buffer.getInt(SLOT_ID) == notificationID && buffer.getInt(SLOT_FIRES) != FREE;
+    }
+
+    private ByteBuffer readSlot(int slot) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SLOT_SIZE);
+        readFully(buffer, (long) slot * SLOT_SIZE);
+        return buffer;
+    }
+
+    /**
+     * Read until the buffer is full or the end of the table, a single read may
+     * return fewer bytes.
+     */
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+
+            if (read < 0) {
+                break;
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * Read the whole table and rebuild the slot maps. The file lock must be held.
+     */
+    private ByteBuffer scan() throws IOException {
+        long size = channel.size() - channel.size() % SLOT_SIZE;
+        ByteBuffer table = ByteBuffer.allocate((int) size);
+        readFully(table, 0);
+        table.flip();
+
+        slots.clear();
+        freeSlots.clear();
+
+        for (int slot = 0; slot < table.limit() / SLOT_SIZE; slot++) {
+            if (table.getInt(slot * SLOT_SIZE + SLOT_FIRES) == FREE) {
+                freeSlots.push(slot);
+            } else {
+                slots.put(table.getInt(slot * SLOT_SIZE + SLOT_ID), slot);
+            }
+        }
+
+        scannedLength = channel.size();
+
+        return table;
+    }
+
+    private static void releaseQuietly(FileLock lock) {
+        if (lock == null) {
+            return;
+        }
+
+        try {
+            lock.release();
+        } catch (IOException e) {
+            // Ignored
+        }
+    }
+}
@@ -0,0 +1,494 @@
+package com.staltz.reactnativeandroidlocalnotification;
+
+import android.app.AlarmManager;
+import android.content.Context;
+
+import com.google.gson.Gson;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+/**
+ * An index of the next fire time of every scheduled notification.
+ *
+ * Each notification is indexed by a compact schedule (first fire time, repeat
+ * interval, end time and the day filters NotificationPublisher applies), kept
+ * in its own store so queries never decode the records. Schedules are sorted
+ * by a lower bound of their next fire time, recurrences are expanded lazily
+ * and merged with a heap when a time range is queried.
+ */
+public class FireTimeIndex {
+    final static String PREFERENCES_KEY = "ReactNativeSystemNotificationSchedule";
+
+    // Marks an index built from the records, it is not a schedule
+    private final static String REBUILT_KEY = "rebuilt";
+
+    private final static int REPEAT_NONE = 0;
+    private final static int REPEAT_INTERVAL = 1;
+    private final static int REPEAT_WEEK = 2;
+    private final static int REPEAT_MONTH = 3;
+    private final static int REPEAT_YEAR = 4;
+
+    // Bounds the search of a matching day for week, month and year repeats
+    private final static int MAX_STEPS = 4000;
+
+    private static FireTimeIndex instance = null;
+
+    private final Context context;
+    private final NotificationStore store;
+    private final Map<Integer, Schedule> schedules = new HashMap<>();
+    private final TreeSet<Schedule> byNextFire = new TreeSet<>(new Comparator<Schedule>() {
+        @Override
+        public int compare(Schedule a, Schedule b) {
+            if (a.bound != b.bound) {
+                return a.bound < b.bound ? -1 : 1;
+            }
+            return a.id < b.id ? -1 : (a.id == b.id ? 0 : 1);
+        }
+    });
+    private long loadedVersion = -1;
+
+    private FireTimeIndex(Context context) {
+        this.context = context;
+        this.store = NotificationStore.getInstance(context, PREFERENCES_KEY);
+
+        // Index the records created before the index existed, once
+        if (!store.contains(REBUILT_KEY)) {
+            rebuild(RCTNotificationManager.getStore(context));
+            store.put(REBUILT_KEY, "1");
+        }
+    }
+
+    static synchronized FireTimeIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new FireTimeIndex(context.getApplicationContext());
+        }
+
+        return instance;
+    }
+
+    /**
+     * Index the schedule of a created or updated notification.
+     */
+    public synchronized void update(int notificationID, NotificationAttributes attributes) {
+        Schedule schedule = Schedule.from(notificationID, attributes, System.currentTimeMillis());
+
+        if (schedule == null) {
+            remove(notificationID);
+            return;
+        }
+
+        schedule.nextFire = schedule.firstBetween(System.currentTimeMillis(), Long.MAX_VALUE, Calendar.getInstance());
+        write(schedule);
+    }
+
+    /**
+     * Move the next fire time of a notification past the current time, after it
+     * fired.
+     */
+    public synchronized void advance(int notificationID) {
+        load();
+
+        Schedule schedule = schedules.get(notificationID);
+        if (schedule == null) {
+            return;
+        }
+
+        Schedule next = Schedule.parse(notificationID, schedule.encode());
+        next.nextFire = next.firstBetween(System.currentTimeMillis() + 1, Long.MAX_VALUE, Calendar.getInstance());
+        write(next);
+    }
+
+    /**
+     * Remove a notification from the index.
+     */
+    public synchronized void remove(int notificationID) {
+        boolean upToDate = store.getVersion() == loadedVersion;
+
+        store.remove(Integer.toString(notificationID));
+        unindex(notificationID);
+
+        if (upToDate) {
+            loadedVersion = store.getVersion();
+        }
+    }
+
+    /**
+     * Get the next fire time of a notification as of its last update or fire,
+     * -1 if it is not indexed.
+     */
+    public synchronized long getNextFire(int notificationID) {
+        load();
+
+        Schedule schedule = schedules.get(notificationID);
+        return schedule != null ? schedule.nextFire : -1;
+    }
+
+    /**
+     * Get the notifications whose alarm repeats daily, the ones that may be
+     * anchored to the wall clock.
+     */
+    public synchronized List<Integer> getDailyRepeats() {
+        load();
+
+        List<Integer> ids = new ArrayList<>();
+        for (Schedule schedule : schedules.values()) {
+            if (schedule.repeat != REPEAT_NONE && schedule.interval == AlarmManager.INTERVAL_DAY) {
+                ids.add(schedule.id);
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * Get the first time the repeating alarm of a notification triggers at or
+     * after from, whether it shows or not. -1 if it is not indexed or does not
+     * repeat.
+     */
+    public synchronized long getNextTrigger(int notificationID, long from) {
+        load();
+
+        Schedule schedule = schedules.get(notificationID);
+        if (schedule == null || schedule.repeat == REPEAT_NONE) {
+            return -1;
+        }
+
+        return schedule.nextTrigger(from);
+    }
+
+    /**
+     * Move the first fire time of a repeating notification whose alarm was
+     * re-armed.
+     */
+    public synchronized void reanchor(int notificationID, long start) {
+        load();
+
+        Schedule schedule = schedules.get(notificationID);
+        if (schedule == null) {
+            return;
+        }
+
+        Schedule next = Schedule.parse(notificationID, schedule.encode());
+        next.start = start;
+        next.nextFire = next.firstBetween(System.currentTimeMillis(), Long.MAX_VALUE, Calendar.getInstance());
+        write(next);
+    }
+
+    /**
+     * Get the fire times between from and to (inclusive), sorted, at most limit
+     * of them. Returns { fire time, notification id } pairs. Notifications with
+     * a repeatCount only expand to the fires they have left.
+     */
+    public synchronized List<long[]> getUpcoming(long from, long to, int limit) {
+        load();
+
+        Calendar calendar = Calendar.getInstance();
+        long now = System.currentTimeMillis();
+        long start = Math.max(from, now);
+        List<long[]> upcoming = new ArrayList<>();
+
+        PriorityQueue<long[]> heap = new PriorityQueue<>(16, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                if (a[0] != b[0]) {
+                    return a[0] < b[0] ? -1 : 1;
+                }
+                return a[1] < b[1] ? -1 : (a[1] == b[1] ? 0 : 1);
+            }
+        });
+
+        // Only the schedules bound to fire by the end of the range are walked
+        reseat(now, calendar);
+        for (Schedule schedule : byNextFire) {
+            if (schedule.bound > to) {
+                break;
+            }
+
+            long remaining = Long.MAX_VALUE;
+            if (schedule.repeatCount > 0) {
+                remaining = schedule.repeatCount - FireCounters.getInstance(context).getFires(schedule.id);
+            }
+
+            long fireTime = schedule.firstBetween(start, to, calendar);
+            if (fireTime <= to && remaining > 0) {
+                heap.add(new long[] { fireTime, schedule.id, remaining });
+            }
+        }
+
+        while (!heap.isEmpty() && upcoming.size() < limit) {
+            long[] next = heap.poll();
+            upcoming.add(new long[] { next[0], next[1] });
+
+            long fireTime = schedules.get((int) next[1]).firstBetween(next[0] + 1, to, calendar);
+            if (fireTime <= to && next[2] > 1) {
+                heap.add(new long[] { fireTime, next[1], next[2] - 1 });
+            }
+        }
+
+        return upcoming;
+    }
+
+    private void write(Schedule schedule) {
+        boolean upToDate = store.getVersion() == loadedVersion;
+
+        store.put(Integer.toString(schedule.id), schedule.encode());
+        unindex(schedule.id);
+        index(schedule);
+
+        if (upToDate) {
+            loadedVersion = store.getVersion();
+        }
+    }
+
+    private void index(Schedule schedule) {
+        schedule.bound = schedule.nextFire;
+        schedules.put(schedule.id, schedule);
+        byNextFire.add(schedule);
+    }
+
+    private void unindex(int notificationID) {
+        Schedule previous = schedules.remove(notificationID);
+
+        if (previous != null) {
+            byNextFire.remove(previous);
+        }
+    }
+
+    /**
+     * Move the schedules bound to fire before now to their first fire from
+     * now on, so the ones that fired or were skipped are not walked again.
+     * Their stored next fire time is left as is.
+     */
+    private void reseat(long now, Calendar calendar) {
+        List<Schedule> passed = new ArrayList<>();
+
+        while (!byNextFire.isEmpty() && byNextFire.first().bound < now) {
+            passed.add(byNextFire.pollFirst());
+        }
+
+        for (Schedule schedule : passed) {
+            schedule.bound = schedule.firstBetween(now, Long.MAX_VALUE, calendar);
+            byNextFire.add(schedule);
+        }
+    }
+
+    /**
+     * Reload the schedules if the store was changed by another process.
+     */
+    private void load() {
+        long version = store.getVersion();
+
+        if (version == loadedVersion) {
+            return;
+        }
+
+        schedules.clear();
+        byNextFire.clear();
+
+        for (Map.Entry<String, String> entry : store.getAll().entrySet()) {
+            if (REBUILT_KEY.equals(entry.getKey())) {
+                continue;
+            }
+
+            try {
+                index(Schedule.parse(Integer.parseInt(entry.getKey()), entry.getValue()));
+            } catch (Exception e) {
+                Logger.e("FireTimeIndex: load Error: {}", entry.getKey());
+            }
+        }
+
+        loadedVersion = version;
+    }
+
+    private void rebuild(NotificationStore records) {
+        Gson gson = new Gson();
+
+        for (Map.Entry<String, String> entry : records.getAll().entrySet()) {
+            try {
+                NotificationAttributes attributes = gson.fromJson(entry.getValue(), NotificationAttributes.class);
+                update(Integer.parseInt(entry.getKey()), Templates.getInstance(context).merge(attributes));
+            } catch (Exception e) {
+                Logger.e("FireTimeIndex: rebuild Error: {}", entry.getKey());
+            }
+        }
+
+        Logger.i("FireTimeIndex: Rebuilt: {} schedules", schedules.size());
+    }
+
+    /**
+     * The compact schedule of a notification.
+     */
+    static class Schedule {
+        int id;
+        long start;
+        int repeat;
+        long interval;
+        long endAt;
+        int weekDay;
+        int day;
+        int month;
+        int repeatCount;
+        long nextFire;
+
+        // Not stored, the time the schedule is sorted by in the index
+        long bound;
+
+        static Schedule from(int notificationID, NotificationAttributes attributes, long now) {
+            Schedule schedule = new Schedule();
+            schedule.id = notificationID;
+            schedule.endAt = attributes.hasEndAt() ? attributes.getEndAt() : Long.MAX_VALUE;
+            schedule.weekDay = attributes.hasSendAtWeekDay() ? attributes.getSendAtWeekDay() : -1;
+            schedule.day = attributes.hasSendAtDay() ? attributes.getSendAtDay() : -1;
+            schedule.month = attributes.hasSendAtMonth() ? attributes.getSendAtMonth() : -1;
+            schedule.repeatCount = attributes.hasRepeatCount() ? attributes.getRepeatCount() : 0;
+
+            if (attributes.isDelayed()) {
+                schedule.start = now + attributes.getDelay();
+                schedule.repeat = REPEAT_NONE;
+                return schedule;
+            }
+
+            if (!attributes.isScheduled() || !attributes.hasSendAt()) {
+                return null;
+            }
+
+            schedule.start = attributes.getSendAt();
+
+            if (attributes.getRepeatType() == null) {
+                schedule.repeat = REPEAT_NONE;
+                return schedule;
+            }
+
+            switch (attributes.getRepeatType()) {
+            case "time":
+                schedule.repeat = REPEAT_INTERVAL;
+                schedule.interval = attributes.getRepeatTime();
+                break;
+            case "minute":
+                schedule.repeat = REPEAT_INTERVAL;
+                schedule.interval = 60000;
+                break;
+            case "hour":
+                schedule.repeat = REPEAT_INTERVAL;
+                schedule.interval = AlarmManager.INTERVAL_HOUR;
+                break;
+            case "halfDay":
+                schedule.repeat = REPEAT_INTERVAL;
+                schedule.interval = AlarmManager.INTERVAL_HALF_DAY;
+                break;
+            case "day":
+                schedule.repeat = REPEAT_INTERVAL;
+                schedule.interval = AlarmManager.INTERVAL_DAY;
+                break;
+            case "week":
+                schedule.repeat = REPEAT_WEEK;
+                schedule.interval = AlarmManager.INTERVAL_DAY;
+                break;
+            case "month":
+                schedule.repeat = REPEAT_MONTH;
+                schedule.interval = AlarmManager.INTERVAL_DAY;
+                break;
+            case "year":
+                schedule.repeat = REPEAT_YEAR;
+                schedule.interval = AlarmManager.INTERVAL_DAY;
+                break;
+            default:
+                schedule.repeat = REPEAT_NONE;
+                break;
+            }
+
+            if (schedule.repeat != REPEAT_NONE && schedule.interval <= 0) {
+                schedule.repeat = REPEAT_NONE;
+            }
+
+            return schedule;
+        }
+
+        static Schedule parse(int notificationID, String encoded) {
+            String[] fields = encoded.split(":");
+            Schedule schedule = new Schedule();
+
+            schedule.id = notificationID;
+            schedule.start = Long.parseLong(fields[0]);
+            schedule.repeat = Integer.parseInt(fields[1]);
+            schedule.interval = Long.parseLong(fields[2]);
+            schedule.endAt = Long.parseLong(fields[3]);
+            schedule.weekDay = Integer.parseInt(fields[4]);
+            schedule.day = Integer.parseInt(fields[5]);
+            schedule.month = Integer.parseInt(fields[6]);
+            schedule.nextFire = Long.parseLong(fields[7]);
+            schedule.repeatCount = fields.length > 8 ? Integer.parseInt(fields[8]) : 0;
+
+            return schedule;
+        }
+
+        String encode() {
+            return start + ":" + repeat + ":" + interval + ":" + endAt + ":" + weekDay + ":" + day + ":" + month
+                    + ":" + nextFire + ":" + repeatCount;
+        }
+
+        /**
+         * Get the first time this notification shows between from and to, or
+         * Long.MAX_VALUE if it does not.
+         */
+        long firstBetween(long from, long to, Calendar calendar) {
+            if (repeat == REPEAT_NONE) {
+                // An overdue alarm fires as soon as possible
+                long fireTime = Math.max(start, System.currentTimeMillis());
+                return fireTime >= from && fireTime <= to && fireTime <= endAt ? fireTime : Long.MAX_VALUE;
+            }
+
+            long fireTime = nextTrigger(from);
+
+            for (int step = 0; step < MAX_STEPS && fireTime <= to && fireTime <= endAt; step++) {
+                if (shows(fireTime, calendar)) {
+                    return fireTime;
+                }
+                fireTime += interval;
+            }
+
+            return Long.MAX_VALUE;
+        }
+
+        /**
+         * Get the first trigger of the repeating alarm at or after from.
+         */
+        long nextTrigger(long from) {
+            if (from <= start) {
+                return start;
+            }
+
+            return start + ((from - start + interval - 1) / interval) * interval;
+        }
+
+        /**
+         * Same day checks as NotificationPublisher.
+         */
+        private boolean shows(long fireTime, Calendar calendar) {
+            if (repeat == REPEAT_INTERVAL) {
+                return true;
+            }
+
+            calendar.setTimeInMillis(fireTime);
+
+            switch (repeat) {
+            case REPEAT_WEEK:
+                return calendar.get(Calendar.DAY_OF_WEEK) - 1 == weekDay;
+            case REPEAT_MONTH:
+                return calendar.get(Calendar.DAY_OF_MONTH) == day;
+            case REPEAT_YEAR:
+                // sendAtMonth is 1 based
+                return calendar.get(Calendar.DAY_OF_MONTH) == day && calendar.get(Calendar.MONTH) + 1 == month;
+            default:
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.staltz.reactnativeandroidlocalnotification;
+
+import android.app.AlarmManager;
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+
+import com.google.gson.Gson;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental garbage collection of the notification records.
+ *
+ * A pass walks the records in short time slices on a background thread, so it
+ * never holds the stores for long. It purges the records past their endAt, the
+ * one-shot records whose alarm was lost, and the records that cannot be read,
+ * cancelling their alarms. It then removes the blobs nothing references and
+ * the cached images nothing pins, and compacts the records store.
+ */
+public class GarbageCollector {
+    // Time budget of a slice, and pause between two slices
+    private final static long SLICE_TIME = 8;
+    private final static long SLICE_INTERVAL = 100;
+
+    // Passes that are not forced run at most this often
+    private final static long PASS_INTERVAL = 15 * 60 * 1000;
+
+    // One-shot records are orphaned once their alarm is this late
+    private final static long ORPHAN_DELAY = AlarmManager.INTERVAL_DAY;
+
+    private static GarbageCollector instance = null;
+
+    private final Context context;
+    private final NotificationStore store;
+    private final Handler handler;
+    private final Gson gson = new Gson();
+
+    private final Runnable slice = new Runnable() {
+        @Override
+        public void run() {
+            runSlice();
+        }
+    };
+
+    // State of the pass in progress, only used on the collector thread
+    private List<String> keys = null;
+    private int position;
+    private long passStartedAt;
+    private long busyTime;
+    private int slices;
+    private int expired;
+    private int orphaned;
+    private int corrupt;
+
+    private boolean running = false;
+    private long lastPassAt = 0;
+    private volatile Stats lastPass = new Stats();
+
+    private GarbageCollector(Context context) {
+        this.context = context;
+        this.store = RCTNotificationManager.getStore(context);
+
+        HandlerThread thread = new HandlerThread("ReactSystemNotificationGC", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+    }
+
+    static synchronized GarbageCollector getInstance(Context context) {
+        if (instance == null) {
+            instance = new GarbageCollector(context.getApplicationContext());
+        }
+
+        return instance;
+    }
+
+    /**
+     * Start a pass, unless one is running or, when not forced, one ran
+     * recently. Returns whether a pass was started.
+     */
+    public synchronized boolean start(boolean force) {
+        long now = System.currentTimeMillis();
+
+        if (running || (!force && now - lastPassAt < PASS_INTERVAL)) {
+            return false;
+        }
+
+        running = true;
+        lastPassAt = now;
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                beginPass();
+            }
+        });
+
+        return true;
+    }
+
+    /**
+     * Get the stats of the last pass.
+     */
+    public Stats getLastPass() {
+        return lastPass;
+    }
+
+    private void beginPass() {
+        keys = new ArrayList<>(store.keys());
+        position = 0;
+        passStartedAt = SystemClock.elapsedRealtime();
+        busyTime = 0;
+        slices = 0;
+        expired = 0;
+        orphaned = 0;
+        corrupt = 0;
+
+        runSlice();
+    }
+
+    private void runSlice() {
+        long sliceStartedAt = SystemClock.elapsedRealtime();
+        long now = System.currentTimeMillis();
+
+        NotificationStore.beginBatch();
+
+        try {
+            while (position < keys.size() && SystemClock.elapsedRealtime() - sliceStartedAt < SLICE_TIME) {
+                try {
+                    collect(keys.get(position++), now);
+                } catch (Exception e) {
+                    Logger.e("GarbageCollector: collect Error: {}", e);
+                }
+            }
+        } finally {
+            NotificationStore.endBatch();
+        }
+
+        busyTime += SystemClock.elapsedRealtime() - sliceStartedAt;
+        slices++;
+
+        if (position < keys.size()) {
+            handler.postDelayed(slice, SLICE_INTERVAL);
+        } else {
+            endPass();
+        }
+    }
+
+    private void endPass() {
+        long sweepStartedAt = SystemClock.elapsedRealtime();
+        int blobs = 0;
+        int images = 0;
+
+        try {
+            blobs = BlobStore.getInstance(context).collectGarbage();
+            images = ImageCache.getInstance(context).collectGarbage();
+
+            if (expired + orphaned + corrupt > 0) {
+                store.compactNow();
+            }
+        } catch (Exception e) {
+            Logger.e("GarbageCollector: endPass Error: {}", e);
+        }
+
+        long now = SystemClock.elapsedRealtime();
+
+        Stats stats = new Stats();
+        stats.finishedAt = System.currentTimeMillis();
+        stats.scanned = keys.size();
+        stats.expired = expired;
+        stats.orphaned = orphaned;
+        stats.corrupt = corrupt;
+        stats.blobs = blobs;
+        stats.images = images;
+        stats.slices = slices;
+        stats.busyTime = busyTime + now - sweepStartedAt;
+        stats.duration = now - passStartedAt;
+        lastPass = stats;
+
+        keys = null;
+
+        synchronized (this) {
+            running = false;
+        }
+
+        Logger.i("GarbageCollector: Pass Done: {} of {} records reclaimed, {} blobs, {} images, {} ms "
+                + "({} ms busy, {} slices)", stats.getReclaimed(), stats.scanned, blobs, images, stats.duration, stats.busyTime, slices);
+    }
+
+    /**
+     * Purge a record if it is expired, orphaned or corrupt.
+     */
+    private void collect(String key, long now) {
+        int notificationID;
+
+        try {
+            notificationID = Integer.parseInt(key);
+        } catch (NumberFormatException e) {
+            store.remove(key);
+            corrupt++;
+            return;
+        }
+
+        String json = store.getString(key);
+        if (json == null) {
+            // Deleted since the pass started
+            return;
+        }
+
+        NotificationAttributes attributes = null;
+
+        try {
+            attributes = gson.fromJson(json, NotificationAttributes.class);
+        } catch (Exception e) {
+            // Handled as corrupt below
+        }
+
+        if (attributes != null) {
+            attributes = Templates.getInstance(context).merge(attributes);
+        }
+
+        if (attributes == null) {
+            purge(notificationID, null);
+            corrupt++;
+
+        } else if (attributes.hasEndAt() && attributes.getEndAt() < now) {
+            purge(notificationID, attributes);
+            expired++;
+
+        } else if (isOrphaned(notificationID, attributes, now)) {
+            purge(notificationID, attributes);
+            orphaned++;
+        }
+    }
+
+    /**
+     * Whether a record can no longer fire: it was never armed, or it is a
+     * one-shot whose alarm is long overdue, the publisher deletes them when
+     * they fire.
+     */
+    private boolean isOrphaned(int notificationID, NotificationAttributes attributes, long now) {
+        if (!attributes.isDelayed() && !attributes.isScheduled()) {
+            return true;
+        }
+
+        if (!attributes.isDelayed() && attributes.getRepeatType() != null) {
+            return false;
+        }
+
+        long nextFire = FireTimeIndex.getInstance(context).getNextFire(notificationID);
+
+        return nextFire >= 0 && nextFire != Long.MAX_VALUE && nextFire + ORPHAN_DELAY < now;
+    }
+
+    private void purge(int notificationID, NotificationAttributes attributes) {
+        Notification notification = new Notification(context, notificationID, attributes);
+        notification.cancelAlarm();
+        notification.deleteFromPreferences();
+
+        Logger.i("GarbageCollector: Record Purged: {}", notificationID);
+    }
+
+    /**
+     * What a pass reclaimed, and how long it took.
+     */
+    static class Stats {
+        long finishedAt;
+        int scanned;
+        int expired;
+        int orphaned;
+        int corrupt;
+        int blobs;
+        int images;
+        int slices;
+        long busyTime;
+        long duration;
+
+        int getReclaimed() {
+            return expired + orphaned + corrupt;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.staltz.reactnativeandroidlocalnotification;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A local cache of the URL images of the scheduled notifications.
+ *
+ * The large icon and big picture URLs of a scheduled notification are
+ * downloaded when it is scheduled, while the app is active, scaled down to the
+ * size they are shown at and written to local files. The files are pinned to
+ * the notification until its record is deleted, so publishing it only reads
+ * local files. Files no longer pinned are removed by the garbage collector.
+ */
+public class ImageCache {
+    final static String PREFERENCES_KEY = "ReactNativeSystemNotificationImages";
+    final static String DIRECTORY_NAME = "ReactNativeSystemNotificationImages";
+
+    final static int LARGE_ICON = 0;
+    final static int BIG_PICTURE = 1;
+
+    // Largest sizes the images are scaled to, in pixels
+    private final static int LARGE_ICON_SIZE = 256;
+    private final static int BIG_PICTURE_WIDTH = 1024;
+    private final static int BIG_PICTURE_HEIGHT = 512;
+
+    private final static int MAX_DOWNLOAD_SIZE = 8 * 1024 * 1024;
+    private final static int TIMEOUT = 15000;
+
+    /**
+     * Files written more recently than this are not collected, their pin may
+     * not be committed yet.
+     */
+    private final static long GRACE_PERIOD = 60 * 1000;
+
+    private static ImageCache instance = null;
+
+    private final File directory;
+    private final NotificationStore pins;
+    private final Handler handler;
+
+    private ImageCache(Context context) {
+        this.directory = new File(context.getFilesDir(), DIRECTORY_NAME);
+        this.pins = NotificationStore.getInstance(context, PREFERENCES_KEY);
+
+        HandlerThread thread = new HandlerThread("ReactSystemNotificationImages", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+    }
+
+    static synchronized ImageCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageCache(context.getApplicationContext());
+        }
+
+        return instance;
+    }
+
+    /**
+     * Whether an image attribute is a URL, rather than a resource name.
+     */
+    static boolean isURL(String value) {
+        return value != null && (value.startsWith("http://") || value.startsWith("https://"));
+    }
+
+    /**
+     * Pin the URL images of a scheduled notification and download the ones
+     * that are not cached yet, in background.
+     */
+    public void prefetch(int notificationID, NotificationAttributes attributes) {
+        final String largeIcon = isURL(attributes.getLargeIcon()) ? attributes.getLargeIcon() : null;
+        final String bigPicture = isURL(attributes.getBigStyleUrlImage()) ? attributes.getBigStyleUrlImage() : null;
+
+        if (largeIcon == null && bigPicture == null) {
+            return;
+        }
+
+        StringBuilder pinned = new StringBuilder();
+        if (largeIcon != null) {
+            pinned.append(getKey(largeIcon, LARGE_ICON));
+        }
+        if (bigPicture != null) {
+            pinned.append(pinned.length() > 0 ? "," : "").append(getKey(bigPicture, BIG_PICTURE));
+        }
+
+        // Pinned first, so the files are never collected before they are used
+        pins.put(Integer.toString(notificationID), pinned.toString());
+
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (largeIcon != null) {
+                    fetch(largeIcon, LARGE_ICON);
+                }
+                if (bigPicture != null) {
+                    fetch(bigPicture, BIG_PICTURE);
+                }
+            }
+        });
+    }
+
+    /**
+     * Get a cached image, null if it was not downloaded.
+     */
+    public Bitmap get(String url, int kind) {
+        File file = getFile(getKey(url, kind));
+
+        if (!file.exists()) {
+            return null;
+        }
+
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+
+        if (bitmap != null) {
+            Logger.d("ImageCache: Cache Hit: {}", url);
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Download an image now, scaled down like a cached one but not cached.
+     * Returns null if it is not an image.
+     */
+    public Bitmap download(String url, int kind) throws IOException {
+        return decodeScaled(download(url), kind);
+    }
+
+    /**
+     * Unpin the images of a notification whose record is deleted.
+     */
+    public void unpin(int notificationID) {
+        pins.remove(Integer.toString(notificationID));
+    }
+
+    /**
+     * Delete the files no notification pins, returns how many were deleted.
+     */
+    public int collectGarbage() {
+        File[] files = directory.listFiles();
+
+        if (files == null) {
+            return 0;
+        }
+
+        Set<String> pinned = new HashSet<>();
+        for (String keys : pins.getAll().values()) {
+            for (String key : keys.split(",")) {
+                pinned.add(key);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        int collected = 0;
+
+        for (File file : files) {
+            String key = file.getName().replace(".tmp", "");
+
+            if (!pinned.contains(key) && now - file.lastModified() >= GRACE_PERIOD && file.delete()) {
+                collected++;
+            }
+        }
+
+        if (collected > 0) {
+            Logger.i("ImageCache: Garbage Collected: {} images", collected);
+        }
+
+        return collected;
+    }
+
+    private void fetch(String url, int kind) {
+        File file = getFile(getKey(url, kind));
+
+        if (file.exists()) {
+            file.setLastModified(System.currentTimeMillis());
+            return;
+        }
+
+        try {
+            Bitmap bitmap = decodeScaled(download(url), kind);
+
+            if (bitmap == null) {
+                Logger.w("ImageCache: Not An Image: {}", url);
+                return;
+            }
+
+            write(file, bitmap, kind);
+            bitmap.recycle();
+
+            Logger.i("ImageCache: Image Prefetched: {}", url);
+
+        } catch (IOException e) {
+            Logger.e("ImageCache: fetch Error: {}: {}", url, e.getMessage());
+        }
+    }
+
+    private static byte[] download(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+
+        InputStream inputStream = null;
+
+        try {
+            inputStream = connection.getInputStream();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+
+            while ((count = inputStream.read(buffer)) != -1) {
+                bytes.write(buffer, 0, count);
+
+                if (bytes.size() > MAX_DOWNLOAD_SIZE) {
+                    throw new IOException("Image larger than " + MAX_DOWNLOAD_SIZE + " bytes");
+                }
+            }
+
+            return bytes.toByteArray();
+
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    // Ignored
+                }
+            }
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Decode an image scaled down to fit the size it is shown at.
+     */
+    private static Bitmap decodeScaled(byte[] bytes, int kind) {
+        int maxWidth = kind == LARGE_ICON ? LARGE_ICON_SIZE : BIG_PICTURE_WIDTH;
+        int maxHeight = kind == LARGE_ICON ? LARGE_ICON_SIZE : BIG_PICTURE_HEIGHT;
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        // Subsample while the image stays at least twice the target size
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= maxWidth && options.outHeight / (sampleSize * 2) >= maxHeight) {
+            sampleSize *= 2;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+
+        if (bitmap == null) {
+            return null;
+        }
+
+        float scale = Math.min((float) maxWidth / bitmap.getWidth(), (float) maxHeight / bitmap.getHeight());
+
+        if (scale < 1) {
+            Bitmap scaled = Bitmap.createScaledBitmap(bitmap, Math.max(1, Math.round(bitmap.getWidth() * scale)),
+                    Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+
+            if (scaled != bitmap) {
+                bitmap.recycle();
+            }
+            bitmap = scaled;
+        }
+
+        return bitmap;
+    }
+
+    private void write(File file, Bitmap bitmap, int kind) throws IOException {
+        File temporary = new File(directory, file.getName() + ".tmp");
+        FileOutputStream outputStream = null;
+
+        try {
+            directory.mkdirs();
+            outputStream = new FileOutputStream(temporary);
+
+            // Icons may be transparent, big pictures are photos most of the time
+            if (kind == LARGE_ICON) {
+                bitmap.compress(Bitmap.CompressFormat.PNG, 100, outputStream);
+            } else {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, 90, outputStream);
+            }
+
+            outputStream.getFD().sync();
+            outputStream.close();
+            outputStream = null;
+
+            if (!temporary.renameTo(file)) {
+                throw new IOException("Cannot rename " + temporary + " to " + file);
+            }
+
+        } finally {
+            if (outputStream != null) {
+                try {
+                    outputStream.close();
+                } catch (IOException e) {
+                    // Ignored
+                }
+            }
+            temporary.delete();
+        }
+    }
+
+    private static String getKey(String url, int kind) {
+        return BlobStore.hash(kind + ":" + url);
+    }
+
+    private File getFile(String key) {
+        return new File(directory, key);
+    }
+}
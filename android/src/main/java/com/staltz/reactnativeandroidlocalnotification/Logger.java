@@ -0,0 +1,214 @@
+package com.staltz.reactnativeandroidlocalnotification;
+
+import android.util.Log;
+
+/**
+ * The logging of the module.
+ *
+ * Messages are formats whose {} placeholders are replaced by the arguments,
+ * only once the level is known to be enabled: a disabled call costs a field
+ * read. Long arguments are truncated, the ones in a {*} placeholder (payloads,
+ * records) are redacted to their length unless redaction is off. Throwable
+ * arguments are replaced by their stack trace.
+ *
+ * Primitive arguments are boxed before the level is checked, calls on hot
+ * paths below the default level are guarded with isLoggable().
+ */
+public class Logger {
+    final static String TAG = "ReactSystemNotification";
+
+    final static int VERBOSE = Log.VERBOSE;
+    final static int DEBUG = Log.DEBUG;
+    final static int INFO = Log.INFO;
+    final static int WARN = Log.WARN;
+    final static int ERROR = Log.ERROR;
+    final static int NONE = Integer.MAX_VALUE;
+
+    // Arguments longer than this are truncated
+    private final static int MAX_ARGUMENT_LENGTH = 256;
+
+    private static volatile int level = INFO;
+    private static volatile boolean redact = true;
+
+    /**
+     * Set the lowest level logged.
+     */
+    static void setLevel(int level) {
+        Logger.level = level;
+    }
+
+    /**
+     * Set the lowest level logged by name: verbose, debug, info, warn, error
+     * or none.
+     */
+    static void setLevel(String name) {
+        switch (name) {
+        case "verbose":
+            setLevel(VERBOSE);
+            break;
+        case "debug":
+            setLevel(DEBUG);
+            break;
+        case "info":
+            setLevel(INFO);
+            break;
+        case "warn":
+            setLevel(WARN);
+            break;
+        case "error":
+            setLevel(ERROR);
+            break;
+        case "none":
+            setLevel(NONE);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown log level: " + name);
+        }
+    }
+
+    /**
+     * Set whether the {*} arguments are redacted.
+     */
+    static void setRedact(boolean redact) {
+        Logger.redact = redact;
+    }
+
+    static boolean isLoggable(int level) {
+        return level >= Logger.level;
+    }
+
+    static void v(String format) {
+        if (VERBOSE >= level) Log.v(TAG, format);
+    }
+
+    static void v(String format, Object a) {
+        if (VERBOSE >= level) Log.v(TAG, format(format, a));
+    }
+
+    static void v(String format, Object a, Object b) {
+        if (VERBOSE >= level) Log.v(TAG, format(format, a, b));
+    }
+
+    static void v(String format, Object a, Object b, Object c) {
+        if (VERBOSE >= level) Log.v(TAG, format(format, a, b, c));
+    }
+
+    static void v(String format, Object a, Object b, Object c, Object d) {
+        if (VERBOSE >= level) Log.v(TAG, format(format, a, b, c, d));
+    }
+
+    static void d(String format) {
+        if (DEBUG >= level) Log.d(TAG, format);
+    }
+
+    static void d(String format, Object a) {
+        if (DEBUG >= level) Log.d(TAG, format(format, a));
+    }
+
+    static void d(String format, Object a, Object b) {
+        if (DEBUG >= level) Log.d(TAG, format(format, a, b));
+    }
+
+    static void d(String format, Object a, Object b, Object c) {
+        if (DEBUG >= level) Log.d(TAG, format(format, a, b, c));
+    }
+
+    static void d(String format, Object a, Object b, Object c, Object d) {
+        if (DEBUG >= level) Log.d(TAG, format(format, a, b, c, d));
+    }
+
+    static void i(String format) {
+        if (INFO >= level) Log.i(TAG, format);
+    }
+
+    static void i(String format, Object a) {
+        if (INFO >= level) Log.i(TAG, format(format, a));
+    }
+
+    static void i(String format, Object a, Object b) {
+        if (INFO >= level) Log.i(TAG, format(format, a, b));
+    }
+
+    static void i(String format, Object a, Object b, Object c) {
+        if (INFO >= level) Log.i(TAG, format(format, a, b, c));
+    }
+
+    static void i(String format, Object a, Object b, Object c, Object d) {
+        if (INFO >= level) Log.i(TAG, format(format, a, b, c, d));
+    }
+
+    static void i(String format, Object... args) {
+        if (INFO >= level) Log.i(TAG, format(format, args));
+    }
+
+    static void w(String format) {
+        if (WARN >= level) Log.w(TAG, format);
+    }
+
+    static void w(String format, Object a) {
+        if (WARN >= level) Log.w(TAG, format(format, a));
+    }
+
+    static void w(String format, Object a, Object b) {
+        if (WARN >= level) Log.w(TAG, format(format, a, b));
+    }
+
+    static void w(String format, Object a, Object b, Object c) {
+        if (WARN >= level) Log.w(TAG, format(format, a, b, c));
+    }
+
+    static void e(String format) {
+        if (ERROR >= level) Log.e(TAG, format);
+    }
+
+    static void e(String format, Object a) {
+        if (ERROR >= level) Log.e(TAG, format(format, a));
+    }
+
+    static void e(String format, Object a, Object b) {
+        if (ERROR >= level) Log.e(TAG, format(format, a, b));
+    }
+
+    /**
+     * Replace the placeholders of a format by the arguments.
+     */
+    static String format(String format, Object... args) {
+        StringBuilder message = new StringBuilder(format.length() + 32 * args.length);
+        int argument = 0;
+        int i = 0;
+
+        while (i < format.length()) {
+            boolean plain = format.startsWith("{}", i);
+            boolean redacted = !plain && format.startsWith("{*}", i);
+
+            if ((plain || redacted) && argument < args.length) {
+                append(message, args[argument++], redacted);
+                i += plain ? 2 : 3;
+            } else {
+                message.append(format.charAt(i++));
+            }
+        }
+
+        return message.toString();
+    }
+
+    private static void append(StringBuilder message, Object argument, boolean redacted) {
+        if (argument instanceof Throwable) {
+            message.append(Log.getStackTraceString((Throwable) argument));
+            return;
+        }
+
+        String value = String.valueOf(argument);
+
+        if (redacted && redact && argument != null) {
+            message.append("<").append(value.length()).append(" chars>");
+
+        } else if (value.length() > MAX_ARGUMENT_LENGTH) {
+            message.append(value, 0, MAX_ARGUMENT_LENGTH).append("...<").append(value.length() - MAX_ARGUMENT_LENGTH)
+                    .append(" more chars>");
+
+        } else {
+            message.append(value);
+        }
+    }
+}
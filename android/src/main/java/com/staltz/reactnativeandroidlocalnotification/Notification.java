@@ -1,7 +1,6 @@
 package com.staltz.reactnativeandroidlocalnotification;
 
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Build;
 import android.os.SystemClock;
 import android.app.PendingIntent;
@@ -9,22 +8,15 @@ import android.app.AlarmManager;
 import android.app.NotificationManager;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import androidx.annotation.Nullable;
-import android.net.Uri;
-import android.app.NotificationChannel;
 
-import java.io.IOException;
 import java.lang.System;
-import java.net.URL;
+import java.util.Calendar;
 
+import com.facebook.react.bridge.ReadableMap;
 import com.google.gson.Gson;
 
-import android.util.Base64;
 import androidx.core.app.NotificationCompat;
-import android.text.Html;
-import android.util.Log;
-import android.graphics.Color;
 
 /**
  * An object-oriented Wrapper class around the system notification class.
@@ -33,10 +25,20 @@ import android.graphics.Color;
  * notifications. It handles operations like showing, canceling and clearing.
  */
 public class Notification {
+    final static String DEFAULT_CHANNEL_ID = "channel_0";
+    final static String DEFAULT_CHANNEL_NAME = "Default";
+
     private Context context;
     private int id;
     private NotificationAttributes attributes;
 
+    // Tag of the notifications posted by the module itself, their ids do not
+    // collide with the ids of the app
+    private String tag = null;
+
+    // The attributes with those of their template merged in
+    private NotificationAttributes merged;
+
     /**
      * Constructor.
      */
@@ -54,19 +56,83 @@ public class Notification {
     }
 
     /**
-     * Public attributes getter.
+     * Public id getter.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Post the notification under a tag, for the notifications of the module.
+     */
+    Notification setTag(String tag) {
+        this.tag = tag;
+        return this;
+    }
+
+    String getTag() {
+        return tag;
+    }
+
+    /**
+     * Public attributes getter, the attributes of the template are merged in.
      */
     public NotificationAttributes getAttributes() {
-        return attributes;
+        if (attributes == null || attributes.getTemplate() == null) {
+            return attributes;
+        }
+
+        if (merged == null) {
+            merged = Templates.getInstance(context).merge(attributes);
+        }
+
+        return merged;
+    }
+
+    /**
+     * Get the payload, loads it from the blob store if it is stored out-of-line.
+     */
+    public String getPayload() {
+        if (attributes.getPayload() == null && attributes.getPayloadRef() != null) {
+            attributes.setPayload(getBlobStore().get(attributes.getPayloadRef()));
+            merged = null;
+        }
+
+        return getAttributes().getPayload();
+    }
+
+    /**
+     * Get the base64 big picture, loads it from the blob store if it is stored
+     * out-of-line.
+     */
+    public String getBigStyleImageBase64() {
+        if (attributes.getBigStyleImageBase64() == null && attributes.getBigStyleImageBase64Ref() != null) {
+            attributes.setBigStyleImageBase64(getBlobStore().get(attributes.getBigStyleImageBase64Ref()));
+            merged = null;
+        }
+
+        return getAttributes().getBigStyleImageBase64();
+    }
+
+    /**
+     * Get the attributes as a ReadableMap, with all out-of-line values loaded.
+     */
+    public ReadableMap asReadableMap() {
+        getPayload();
+        getBigStyleImageBase64();
+
+        return getAttributes().asReadableMap();
     }
 
     /**
      * Create the notification, show it now or set the schedule.
      */
     public Notification create() {
+        FireCounters.getInstance(context).reset(id);
+        Trace.record(context, Trace.CREATED, id);
         setAlarmAndSaveOrShow();
 
-        Log.i("ReactSystemNotification", "Notification Created: " + id);
+        Logger.i("Notification Created: {}", id);
 
         return this;
     }
@@ -77,6 +143,9 @@ public class Notification {
     public Notification update(NotificationAttributes notificationAttributes) {
         delete();
         attributes = notificationAttributes;
+        merged = null;
+        FireCounters.getInstance(context).reset(id);
+        Trace.record(context, Trace.UPDATED, id);
         setAlarmAndSaveOrShow();
 
         return this;
@@ -86,9 +155,13 @@ public class Notification {
      * Clear the notification from the status bar.
      */
     public Notification clear() {
+        PostingQueue.getInstance(context).remove(id);
         getSysNotificationManager().cancel(id);
+        PayloadReferences.detach(context, id);
+        RCTNotificationManager.removeFromGroup(context, id);
+        new Digests(context).remove(id);
 
-        Log.i("ReactSystemNotification", "Notification Cleared: " + id);
+        Logger.i("Notification Cleared: {}", id);
 
         return this;
     }
@@ -97,15 +170,19 @@ public class Notification {
      * Cancel the notification.
      */
     public Notification delete() {
+        PostingQueue.getInstance(context).remove(id);
         getSysNotificationManager().cancel(id);
+        PayloadReferences.detach(context, id);
+        RCTNotificationManager.removeFromGroup(context, id);
+        new Digests(context).remove(id);
 
-        if (attributes.delayed || attributes.scheduled) {
+        if (getAttributes().isDelayed() || getAttributes().isScheduled()) {
             cancelAlarm();
         }
 
         deleteFromPreferences();
 
-        Log.i("ReactSystemNotification", "Notification Deleted: " + id);
+        Logger.i("Notification Deleted: {}", id);
 
         return this;
     }
@@ -115,166 +192,150 @@ public class Notification {
      */
     public android.app.Notification build() {
         androidx.core.app.NotificationCompat.Builder notificationBuilder;
-        String iconName = attributes.smallIcon != null ? attributes.smallIcon : "ic_launcher";
-        int iconResource = context.getResources().getIdentifier(attributes.smallIcon, "mipmap", context.getPackageName());
-        String channelID = attributes.channelID != null ? attributes.channelID : "channel_0";
-        if (iconResource == 0) {
-            Log.w("Notification", "icon resource not found with name " + iconName);
-        }
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            String channelName = attributes.channelName != null ? attributes.channelName : "Default";
-            int importance = NotificationManager.IMPORTANCE_DEFAULT;
-            NotificationManager notificationManager = getSysNotificationManager();
-            NotificationChannel channel = new NotificationChannel(channelID, channelName, importance);
-            notificationManager.createNotificationChannel(channel);
-        }
-        notificationBuilder = new androidx.core.app.NotificationCompat.Builder(context, channelID);
-        notificationBuilder.setContentTitle(attributes.subject).setContentText(attributes.message)
-                .setSmallIcon(iconResource)
-                .setAutoCancel(attributes.autoClear).setContentIntent(getContentIntent());
-
-        if (attributes.priority != null) {
-            notificationBuilder.setPriority(attributes.priority);
-        }
-
-        if (attributes.largeIcon != null) {
-            Bitmap largeIcon = null;
-            try {
-                URL url = new URL(attributes.largeIcon);
-                largeIcon = BitmapFactory.decodeStream(url.openConnection().getInputStream());
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            if(largeIcon == null){
-                int largeIconId = context.getResources().getIdentifier(attributes.largeIcon, "drawable",
-                        context.getPackageName());
-                largeIcon = BitmapFactory.decodeResource(context.getResources(), largeIconId);
+        RenderPlan plan = RenderPlan.get(context, this);
+
+        // Attached once, the content and action intents share the handle
+        String payloadHandle = isPayloadByReference() ? PayloadReferences.attach(context, id, getPayload()) : null;
+
+        plan.createChannel(context, getAttributes());
+        notificationBuilder = new androidx.core.app.NotificationCompat.Builder(context, plan.channelID);
+        notificationBuilder.setContentTitle(getAttributes().getSubject()).setContentText(getAttributes().getMessage())
+                .setSmallIcon(plan.smallIcon)
+                .setAutoCancel(getAttributes().isAutoClear()).setContentIntent(getContentIntent(payloadHandle));
+
+        if (isPayloadByReference() || getAttributes().getGroup() != null) {
+            notificationBuilder.setDeleteIntent(getDeleteIntent());
+        }
+
+        if (getAttributes().hasPriority()) {
+            notificationBuilder.setPriority(getAttributes().getPriority());
+        }
+
+        if (getAttributes().getLargeIcon() != null) {
+            notificationBuilder.setLargeIcon(plan.getLargeIcon(context));
+        }
+
+        if (getAttributes().getGroup() != null) {
+            notificationBuilder.setGroup(getAttributes().getGroup());
+        }
+
+        if (getAttributes().getActions() != null) {
+            for (int i = 0; i < getAttributes().getActions().size(); i++) {
+                NotificationAttributes.Action action = getAttributes().getActions().get(i);
+                notificationBuilder.addAction(plan.actionIcons[i], action.title,
+                        getActionIntent(action, payloadHandle));
             }
-            notificationBuilder.setLargeIcon(largeIcon);
         }
 
-        if (attributes.group != null) {
-            notificationBuilder.setGroup(attributes.group);
+        if (isGroupSummary()) {
             notificationBuilder.setGroupSummary(true);
+            notificationBuilder.setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_CHILDREN);
         }
 
-        if (attributes.inboxStyle) {
+        if (getAttributes().isInboxStyle()) {
 
             androidx.core.app.NotificationCompat.InboxStyle inboxStyle = new androidx.core.app.NotificationCompat.InboxStyle();
 
-            if (attributes.inboxStyleBigContentTitle != null) {
-                inboxStyle.setBigContentTitle(attributes.inboxStyleBigContentTitle);
+            if (getAttributes().getInboxStyleBigContentTitle() != null) {
+                inboxStyle.setBigContentTitle(getAttributes().getInboxStyleBigContentTitle());
             }
-            if (attributes.inboxStyleSummaryText != null) {
-                inboxStyle.setSummaryText(attributes.inboxStyleSummaryText);
+            if (getAttributes().getInboxStyleSummaryText() != null) {
+                inboxStyle.setSummaryText(getAttributes().getInboxStyleSummaryText());
             }
-            if (attributes.inboxStyleLines != null) {
-                for (int i = 0; i < attributes.inboxStyleLines.size(); i++) {
-                    inboxStyle.addLine(Html.fromHtml(attributes.inboxStyleLines.get(i)));
-                }
+            for (CharSequence line : plan.inboxLines) {
+                inboxStyle.addLine(line);
             }
             notificationBuilder.setStyle(inboxStyle);
 
-            Log.i("ReactSystemNotification", "set inbox style!!");
+            Logger.d("set inbox style!!");
 
         } else {
 
-            int defaults = 0;
-            if ("default".equals(attributes.sound)) {
-                defaults = defaults | android.app.Notification.DEFAULT_SOUND;
-            }
-            if ("default".equals(attributes.vibrate)) {
-                defaults = defaults | android.app.Notification.DEFAULT_VIBRATE;
-            }
-            if ("default".equals(attributes.lights)) {
-                defaults = defaults | android.app.Notification.DEFAULT_LIGHTS;
-            }
-            notificationBuilder.setDefaults(defaults);
+            notificationBuilder.setDefaults(plan.defaults);
 
         }
 
-        if (attributes.onlyAlertOnce != null) {
-            notificationBuilder.setOnlyAlertOnce(attributes.onlyAlertOnce);
+        if (getAttributes().hasOnlyAlertOnce()) {
+            notificationBuilder.setOnlyAlertOnce(getAttributes().isOnlyAlertOnce());
         }
 
-        if (attributes.tickerText != null) {
-            notificationBuilder.setTicker(attributes.tickerText);
+        if (getAttributes().getTickerText() != null) {
+            notificationBuilder.setTicker(getAttributes().getTickerText());
         }
 
-        if (attributes.when != null) {
-            notificationBuilder.setWhen(attributes.when);
+        if (getAttributes().hasWhen()) {
+            notificationBuilder.setWhen(getAttributes().getWhen());
             notificationBuilder.setShowWhen(true);
         }
 
         // if bigText is not null, it have priority over bigStyleImageBase64
-        if (attributes.bigText != null) {
+        if (getAttributes().getBigText() != null) {
             notificationBuilder
-                    .setStyle(new androidx.core.app.NotificationCompat.BigTextStyle().bigText(attributes.bigText));
-        } else if (attributes.bigStyleUrlImage != null && !attributes.bigStyleUrlImage.equals("")) {
+                    .setStyle(new androidx.core.app.NotificationCompat.BigTextStyle().bigText(getAttributes().getBigText()));
+        } else if (getAttributes().getBigStyleUrlImage() != null && !getAttributes().getBigStyleUrlImage().equals("")) {
 
-            Bitmap bigPicture = null;
+            Bitmap bigPicture = getImageCache().get(getAttributes().getBigStyleUrlImage(), ImageCache.BIG_PICTURE);
 
-            try {
+            // Not prefetched, the notification is shown right away or the download failed
+            if (bigPicture == null) {
+                try {
 
-                Log.i("ReactSystemNotification", "start to get image from URL : " + attributes.bigStyleUrlImage);
-                URL url = new URL(attributes.bigStyleUrlImage);
-                bigPicture = BitmapFactory.decodeStream(url.openStream());
-                Log.i("ReactSystemNotification", "finishing to get image from URL");
+                    Logger.d("start to get image from URL : {}", getAttributes().getBigStyleUrlImage());
+                    bigPicture = getImageCache().download(getAttributes().getBigStyleUrlImage(),
+                            ImageCache.BIG_PICTURE);
+                    Logger.d("finishing to get image from URL");
 
-            } catch (Exception e) {
-                Log.e("ReactSystemNotification", "Error when getting image from URL" + e.getStackTrace());
+                } catch (Exception e) {
+                    Logger.e("Error when getting image from URL: {}", e);
+                }
             }
 
             if (bigPicture != null) {
                 notificationBuilder.setStyle(new NotificationCompat.BigPictureStyle().bigPicture(bigPicture));
             }
-        } else if (attributes.bigStyleImageBase64 != null) {
-
-            Bitmap bigPicture = null;
-
-            try {
+        } else if (plan.bigPictureBase64 != null) {
+            notificationBuilder.setStyle(new NotificationCompat.BigPictureStyle().bigPicture(plan.bigPictureBase64));
+        }
 
-                Log.i("ReactSystemNotification", "start to convert bigStyleImageBase64 to bitmap");
-                // Convert base64 image to Bitmap
-                byte[] bitmapAsBytes = Base64.decode(attributes.bigStyleImageBase64.getBytes(), Base64.DEFAULT);
-                bigPicture = BitmapFactory.decodeByteArray(bitmapAsBytes, 0, bitmapAsBytes.length);
-                Log.i("ReactSystemNotification", "finished to convert bigStyleImageBase64 to bitmap");
+        if (plan.hasColor) {
+            notificationBuilder.setColor(plan.color);
+        }
 
-            } catch (Exception e) {
-                Log.e("ReactSystemNotification", "Error when converting base 64 to Bitmap" + e.getStackTrace());
-            }
+        if (getAttributes().getSubText() != null) {
+            notificationBuilder.setSubText(getAttributes().getSubText());
+        }
 
-            if (bigPicture != null) {
-                notificationBuilder.setStyle(new NotificationCompat.BigPictureStyle().bigPicture(bigPicture));
+        if (getAttributes().hasProgress()) {
+            if (getAttributes().getProgress() < 0 || getAttributes().getProgress() > 1000) {
+                notificationBuilder.setProgress(1000, 100, true);
+            } else {
+                notificationBuilder.setProgress(1000, getAttributes().getProgress(), false);
             }
         }
 
-        if (attributes.color != null) {
-            notificationBuilder.setColor(Color.parseColor(attributes.color));
+        if (getAttributes().hasNumber()) {
+            notificationBuilder.setNumber(getAttributes().getNumber());
         }
 
-        if (attributes.subText != null) {
-            notificationBuilder.setSubText(attributes.subText);
+        if (getAttributes().hasLocalOnly()) {
+            notificationBuilder.setLocalOnly(getAttributes().isLocalOnly());
         }
 
-        if (attributes.progress != null) {
-            if (attributes.progress < 0 || attributes.progress > 1000) {
-                notificationBuilder.setProgress(1000, 100, true);
-            } else {
-                notificationBuilder.setProgress(1000, attributes.progress, false);
-            }
+        if (plan.sound != null) {
+            notificationBuilder.setSound(plan.sound);
         }
 
-        if (attributes.number != null) {
-            notificationBuilder.setNumber(attributes.number);
+        // The system renders the chronometer from the when time, no updates needed
+        if (getAttributes().hasUsesChronometer()) {
+            notificationBuilder.setUsesChronometer(getAttributes().isUsesChronometer());
         }
 
-        if (attributes.localOnly != null) {
-            notificationBuilder.setLocalOnly(attributes.localOnly);
+        if (getAttributes().hasChronometerCountDown()) {
+            notificationBuilder.setChronometerCountDown(getAttributes().isChronometerCountDown());
         }
 
-        if (attributes.sound != null) {
-            notificationBuilder.setSound(Uri.parse(attributes.sound));
+        if (getTimeout() != null) {
+            notificationBuilder.setTimeoutAfter(getTimeout());
         }
 
         return notificationBuilder.build();
@@ -284,25 +345,40 @@ public class Notification {
      * Show the notification now.
      */
     public void show() {
-        getSysNotificationManager().notify(id, build());
+        getSysNotificationManager().notify(tag, id, build());
 
-        Log.i("ReactSystemNotification", "Notification Show: " + id);
+        // Before Android 8 the system does not time notifications out
+        if (getTimeout() != null && Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            setExpiryAlarm(getTimeout());
+        }
+
+        if (getAttributes().getGroup() != null && !isGroupSummary()) {
+            RCTNotificationManager.addToGroup(context, id, getAttributes());
+        }
+
+        Trace.record(context, Trace.SHOWN, id);
+
+        Logger.i("Notification Show: {}", id);
     }
 
     /**
      * Setup alarm or show the notification.
      */
     public void setAlarmAndSaveOrShow() {
-        if (attributes.delayed) {
+        if (getAttributes().isDelayed()) {
             setDelay();
             saveAttributesToPreferences();
+            getImageCache().prefetch(id, getAttributes());
+            RenderPlan.get(context, this);
 
-        } else if (attributes.scheduled) {
+        } else if (getAttributes().isScheduled()) {
             setSchedule();
             saveAttributesToPreferences();
+            getImageCache().prefetch(id, getAttributes());
+            RenderPlan.get(context, this);
 
-        } else {
-            show();
+        } else if (!new Digests(context).offer(this)) {
+            PostingQueue.getInstance(context).post(this);
         }
     }
 
@@ -312,12 +388,12 @@ public class Notification {
     public void setDelay() {
         PendingIntent pendingIntent = getScheduleNotificationIntent();
 
-        long futureInMillis = SystemClock.elapsedRealtime() + attributes.delay;
-        getAlarmManager().set(AlarmManager.ELAPSED_REALTIME_WAKEUP, futureInMillis, pendingIntent);
+        long futureInMillis = SystemClock.elapsedRealtime() + getAttributes().getDelay();
+        setOneTimeAlarm(AlarmManager.ELAPSED_REALTIME_WAKEUP, futureInMillis, pendingIntent);
+        Trace.record(context, Trace.ARMED, id);
 
-        Log.i("ReactSystemNotification",
-                "Notification Delay Alarm Set: " + id + ", Repeat Type: " + attributes.repeatType + ", Current Time: "
-                        + System.currentTimeMillis() + ", Delay: " + attributes.delay);
+        Logger.i("Notification Delay Alarm Set: {}, Repeat Type: {}, Current Time: {}, Delay: {}",
+                id, getAttributes().getRepeatType(), System.currentTimeMillis(), getAttributes().getDelay());
     }
 
     /**
@@ -326,54 +402,197 @@ public class Notification {
     public void setSchedule() {
         PendingIntent pendingIntent = getScheduleNotificationIntent();
 
-        if (attributes.repeatType == null) {
-            getAlarmManager().set(AlarmManager.RTC_WAKEUP, attributes.sendAt, pendingIntent);
-            Log.i("ReactSystemNotification", "Set One-Time Alarm: " + id);
+        if (getAttributes().getRepeatType() == null) {
+            setOneTimeAlarm(AlarmManager.RTC_WAKEUP, getAttributes().getSendAt(), pendingIntent);
+            Logger.i("Set One-Time Alarm: {}", id);
 
         } else {
-            switch (attributes.repeatType) {
+            switch (getAttributes().getRepeatType()) {
             case "time":
-                getAlarmManager().setRepeating(AlarmManager.RTC_WAKEUP, attributes.sendAt, attributes.repeatTime,
-                        pendingIntent);
-                Log.i("ReactSystemNotification", "Set " + attributes.repeatTime + "ms Alarm: " + id);
+                setRepeatingAlarm(getAttributes().getSendAt(), getAttributes().getRepeatTime(), pendingIntent);
+                Logger.i("Set {}ms Alarm: {}", getAttributes().getRepeatTime(), id);
                 break;
 
             case "minute":
-                getAlarmManager().setRepeating(AlarmManager.RTC_WAKEUP, attributes.sendAt, 60000, pendingIntent);
-                Log.i("ReactSystemNotification", "Set Minute Alarm: " + id);
+                setRepeatingAlarm(getAttributes().getSendAt(), 60000, pendingIntent);
+                Logger.i("Set Minute Alarm: {}", id);
                 break;
 
             case "hour":
-                getAlarmManager().setRepeating(AlarmManager.RTC_WAKEUP, attributes.sendAt, AlarmManager.INTERVAL_HOUR,
-                        pendingIntent);
-                Log.i("ReactSystemNotification", "Set Hour Alarm: " + id);
+                setRepeatingAlarm(getAttributes().getSendAt(), AlarmManager.INTERVAL_HOUR, pendingIntent);
+                Logger.i("Set Hour Alarm: {}", id);
                 break;
 
             case "halfDay":
-                getAlarmManager().setRepeating(AlarmManager.RTC_WAKEUP, attributes.sendAt,
-                        AlarmManager.INTERVAL_HALF_DAY, pendingIntent);
-                Log.i("ReactSystemNotification", "Set Half-Day Alarm: " + id);
+                setRepeatingAlarm(getAttributes().getSendAt(), AlarmManager.INTERVAL_HALF_DAY, pendingIntent);
+                Logger.i("Set Half-Day Alarm: {}", id);
                 break;
 
             case "day":
             case "week":
             case "month":
             case "year":
-                getAlarmManager().setRepeating(AlarmManager.RTC_WAKEUP, attributes.sendAt, AlarmManager.INTERVAL_DAY,
-                        pendingIntent);
-                Log.i("ReactSystemNotification", "Set Day Alarm: " + id + ", Type: " + attributes.repeatType);
+                setRepeatingAlarm(getAttributes().getSendAt(), AlarmManager.INTERVAL_DAY, pendingIntent);
+                Logger.i("Set Day Alarm: {}, Type: {}", id, getAttributes().getRepeatType());
                 break;
 
             default:
-                getAlarmManager().set(AlarmManager.RTC_WAKEUP, attributes.sendAt, pendingIntent);
-                Log.i("ReactSystemNotification", "Set One-Time Alarm: " + id);
+                setOneTimeAlarm(AlarmManager.RTC_WAKEUP, getAttributes().getSendAt(), pendingIntent);
+                Logger.i("Set One-Time Alarm: {}", id);
                 break;
             }
         }
 
-        Log.i("ReactSystemNotification",
-                "Notification Schedule Alarm Set: " + id + ", Repeat Type: " + attributes.repeatType
-                        + ", Current Time: " + System.currentTimeMillis() + ", First Send At: " + attributes.sendAt);
+        Trace.record(context, Trace.ARMED, id);
+
+        Logger.i("Notification Schedule Alarm Set: {}, Repeat Type: {}, Current Time: {}, First Send At: {}",
+                id, getAttributes().getRepeatType(), System.currentTimeMillis(), getAttributes().getSendAt());
+    }
+
+    /**
+     * Whether the notification repeats at a time of the day, rather than
+     * after a time interval.
+     */
+    public boolean isWallClockAnchored() {
+        NotificationAttributes attributes = getAttributes();
+
+        if (attributes.isDelayed() || !attributes.isScheduled() || attributes.getRepeatType() == null
+                || !attributes.hasSendAtHour() || !attributes.hasSendAtMinute()) {
+            return false;
+        }
+
+        switch (attributes.getRepeatType()) {
+        case "day":
+        case "week":
+        case "month":
+        case "year":
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Re-arm a wall clock anchored notification if its next alarm no longer
+     * triggers at sendAtHour:sendAtMinute, after a time zone, clock or DST
+     * change. Only the alarm and the fire time index are updated, the record
+     * is not rewritten. Returns whether it was re-armed.
+     */
+    public boolean rearmIfDrifted(long now) {
+        long trigger = FireTimeIndex.getInstance(context).getNextTrigger(id, now);
+
+        // Not armed, or still on time
+        if (trigger < 0 || isAtSendTime(trigger)) {
+            return false;
+        }
+
+        long start = getWallClockStart(now);
+
+        cancelAlarm();
+        setRepeatingAlarm(start, AlarmManager.INTERVAL_DAY, getScheduleNotificationIntent());
+        FireTimeIndex.getInstance(context).reanchor(id, start);
+        Trace.record(context, Trace.REARMED, id);
+
+        Logger.i("Notification Alarm Re-Armed: {}, Previous Trigger: {}, Next Trigger: {}", id, trigger, start);
+
+        return true;
+    }
+
+    private boolean isAtSendTime(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+
+        return calendar.get(Calendar.HOUR_OF_DAY) == getAttributes().getSendAtHour()
+                && calendar.get(Calendar.MINUTE) == getAttributes().getSendAtMinute();
+    }
+
+    /**
+     * Get the first fire time at sendAtHour:sendAtMinute in the current time
+     * zone: the send date if it is still ahead, the next occurrence otherwise.
+     */
+    private long getWallClockStart(long now) {
+        NotificationAttributes attributes = getAttributes();
+        Calendar calendar = Calendar.getInstance();
+
+        // Seconds are not unfolded, time zone offsets are whole minutes
+        int millis = attributes.hasSendAt() ? (int) (attributes.getSendAt() % 60000) : 0;
+
+        calendar.setTimeInMillis(now);
+        if (attributes.hasSendAtYear() && attributes.hasSendAtMonth() && attributes.hasSendAtDay()) {
+            calendar.set(attributes.getSendAtYear(), attributes.getSendAtMonth() - 1, attributes.getSendAtDay());
+        }
+        calendar.set(Calendar.HOUR_OF_DAY, attributes.getSendAtHour());
+        calendar.set(Calendar.MINUTE, attributes.getSendAtMinute());
+        calendar.set(Calendar.SECOND, millis / 1000);
+        calendar.set(Calendar.MILLISECOND, millis % 1000);
+
+        if (calendar.getTimeInMillis() > now) {
+            return calendar.getTimeInMillis();
+        }
+
+        calendar.setTimeInMillis(now);
+        calendar.set(Calendar.HOUR_OF_DAY, attributes.getSendAtHour());
+        calendar.set(Calendar.MINUTE, attributes.getSendAtMinute());
+        calendar.set(Calendar.SECOND, millis / 1000);
+        calendar.set(Calendar.MILLISECOND, millis % 1000);
+
+        if (calendar.getTimeInMillis() <= now) {
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Set a one-time alarm. Tolerant notifications get a delivery window the
+     * system can batch with other alarms, the others keep their exact time.
+     */
+    private void setOneTimeAlarm(int type, long triggerAtMillis, PendingIntent pendingIntent) {
+        AlarmManager alarmManager = getAlarmManager();
+        boolean allowWhileIdle = getAttributes().isAllowWhileIdle()
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+
+        if (!isTolerant() || Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            if (allowWhileIdle) {
+                alarmManager.setExactAndAllowWhileIdle(type, triggerAtMillis, pendingIntent);
+            } else {
+                alarmManager.set(type, triggerAtMillis, pendingIntent);
+            }
+            getAlarmBatcher().countExact();
+
+        } else if (allowWhileIdle) {
+            // The system chooses the delivery time, there is no window to align
+            alarmManager.setAndAllowWhileIdle(type, triggerAtMillis, pendingIntent);
+            getAlarmBatcher().countWindowed();
+
+        } else {
+            // Windows are aligned in wall clock time
+            long offset = type == AlarmManager.RTC_WAKEUP ? 0
+                    : System.currentTimeMillis() - SystemClock.elapsedRealtime();
+            long[] window = getAlarmBatcher().align(id, triggerAtMillis + offset, getAttributes().getTolerance());
+
+            alarmManager.setWindow(type, window[0] - offset, window[1], pendingIntent);
+            Logger.i("Set Windowed Alarm: {}, Window: {}ms", id, window[1]);
+        }
+    }
+
+    /**
+     * Set a repeating alarm, inexact for tolerant notifications.
+     */
+    private void setRepeatingAlarm(long triggerAtMillis, long intervalMillis, PendingIntent pendingIntent) {
+        if (isTolerant()) {
+            getAlarmManager().setInexactRepeating(AlarmManager.RTC_WAKEUP, triggerAtMillis, intervalMillis,
+                    pendingIntent);
+            getAlarmBatcher().countInexactRepeating();
+
+        } else {
+            getAlarmManager().setRepeating(AlarmManager.RTC_WAKEUP, triggerAtMillis, intervalMillis, pendingIntent);
+            getAlarmBatcher().countExact();
+        }
+    }
+
+    private boolean isTolerant() {
+        return getAttributes().hasTolerance() && getAttributes().getTolerance() > 0;
     }
 
     /**
@@ -382,46 +601,136 @@ public class Notification {
     public void cancelAlarm() {
         PendingIntent pendingIntent = getScheduleNotificationIntent();
         getAlarmManager().cancel(pendingIntent);
+        getAlarmBatcher().remove(id);
 
-        Log.i("ReactSystemNotification", "Notification Alarm Canceled: " + id);
+        Logger.i("Notification Alarm Canceled: {}", id);
     }
 
     public void saveAttributesToPreferences() {
-        SharedPreferences.Editor editor = getSharedPreferences().edit();
+        String previousJSONString = getStore().getString(Integer.toString(id));
+
+        attributes.setAttributesHash(hashAttributes(attributes));
+
+        // Large values are stored once in the blob store, the record only keeps
+        // their hashes
+        String payload = attributes.getPayload();
+        String bigStyleImageBase64 = attributes.getBigStyleImageBase64();
+
+        attributes.setPayloadRef(storeOutOfLine(payload, attributes.getPayloadRef()));
+        attributes.setBigStyleImageBase64Ref(storeOutOfLine(bigStyleImageBase64, attributes.getBigStyleImageBase64Ref()));
+        if (attributes.getPayloadRef() != null) {
+            attributes.setPayload(null);
+        }
+        if (attributes.getBigStyleImageBase64Ref() != null) {
+            attributes.setBigStyleImageBase64(null);
+        }
 
         String attributesJSONString = new Gson().toJson(attributes);
 
-        editor.putString(Integer.toString(id), attributesJSONString);
+        attributes.setPayload(payload);
+        attributes.setBigStyleImageBase64(bigStyleImageBase64);
+        releaseBlobs(previousJSONString);
 
-        if (Build.VERSION.SDK_INT < 9) {
-            editor.commit();
-        } else {
-            editor.apply();
+        getStore().put(Integer.toString(id), attributesJSONString);
+        merged = null;
+        FireTimeIndex.getInstance(context).update(id, getAttributes());
+
+        if (Logger.isLoggable(Logger.DEBUG)) {
+            Logger.d("Notification Saved To Pref: {}: {*}", id, attributesJSONString);
         }
+    }
 
-        Log.i("ReactSystemNotification", "Notification Saved To Pref: " + id + ": " + attributesJSONString);
+    /**
+     * Get a stable hash of the attributes given by the app, the fields set by
+     * the store are not hashed.
+     */
+    static String hashAttributes(NotificationAttributes attributes) {
+        String payloadRef = attributes.getPayloadRef();
+        String bigStyleImageBase64Ref = attributes.getBigStyleImageBase64Ref();
+        String attributesHash = attributes.getAttributesHash();
+
+        attributes.setPayloadRef(null);
+        attributes.setBigStyleImageBase64Ref(null);
+        attributes.setAttributesHash(null);
+
+        String attributesJSONString = new Gson().toJson(attributes);
+
+        attributes.setPayloadRef(payloadRef);
+        attributes.setBigStyleImageBase64Ref(bigStyleImageBase64Ref);
+        attributes.setAttributesHash(attributesHash);
+
+        return BlobStore.hash(attributesJSONString);
     }
 
     public void loadAttributesFromPreferences() {
-        String attributesJSONString = getSharedPreferences().getString(Integer.toString(id), null);
+        String attributesJSONString = getStore().getString(Integer.toString(id));
         this.attributes = (NotificationAttributes) new Gson().fromJson(attributesJSONString,
                 NotificationAttributes.class);
+        this.merged = null;
 
-        Log.i("ReactSystemNotification", "Notification Loaded From Pref: " + id + ": " + attributesJSONString);
+        if (Logger.isLoggable(Logger.DEBUG)) {
+            Logger.d("Notification Loaded From Pref: {}: {*}", id, attributesJSONString);
+        }
     }
 
     public void deleteFromPreferences() {
-        SharedPreferences.Editor editor = getSharedPreferences().edit();
+        releaseBlobs(getStore().getString(Integer.toString(id)));
+        getStore().remove(Integer.toString(id));
+        FireTimeIndex.getInstance(context).remove(id);
+        FireCounters.getInstance(context).reset(id);
+        getImageCache().unpin(id);
+        RenderPlan.remove(id);
+        Trace.record(context, Trace.DELETED, id);
+
+        Logger.i("Notification Deleted From Pref: {}", id);
+    }
 
-        editor.remove(Integer.toString(id));
+    /**
+     * Store a value in the blob store if it is large, returns the reference to
+     * keep in the record or null to keep the value inline.
+     */
+    private String storeOutOfLine(String value, String ref) {
+        if (value == null) {
+            // Not loaded yet, keep referencing the same blob
+            getBlobStore().acquire(ref);
+            return ref;
+        }
 
-        if (Build.VERSION.SDK_INT < 9) {
-            editor.commit();
-        } else {
-            editor.apply();
+        if (BlobStore.shouldStore(value)) {
+            return getBlobStore().put(value);
+        }
+
+        return null;
+    }
+
+    /**
+     * Release the blobs referenced by a stored record.
+     */
+    private void releaseBlobs(@Nullable String attributesJSONString) {
+        if (attributesJSONString == null) {
+            return;
+        }
+
+        try {
+            NotificationAttributes stored = new Gson().fromJson(attributesJSONString, NotificationAttributes.class);
+            getBlobStore().release(stored.getPayloadRef());
+            getBlobStore().release(stored.getBigStyleImageBase64Ref());
+
+        } catch (Exception e) {
+            Logger.e("Notification: releaseBlobs Error: {}", e);
         }
+    }
+
+    private BlobStore getBlobStore() {
+        return BlobStore.getInstance(context);
+    }
+
+    private ImageCache getImageCache() {
+        return ImageCache.getInstance(context);
+    }
 
-        Log.i("ReactSystemNotification", "Notification Deleted From Pref: " + id);
+    private AlarmBatcher getAlarmBatcher() {
+        return new AlarmBatcher(context);
     }
 
     private NotificationManager getSysNotificationManager() {
@@ -432,20 +741,104 @@ public class Notification {
         return (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
     }
 
-    private SharedPreferences getSharedPreferences() {
-        return RCTNotificationManager.getSharedPreferences(context);
+    private NotificationStore getStore() {
+        return RCTNotificationManager.getStore(context);
+    }
+
+    /**
+     * Get how long the notification stays posted, timeoutAfter or lifetime.
+     */
+    private Integer getTimeout() {
+        if (getAttributes().hasTimeoutAfter()) {
+            return getAttributes().getTimeoutAfter();
+        }
+
+        return getAttributes().hasLifetime() ? getAttributes().getLifetime() : null;
     }
 
-    private PendingIntent getContentIntent() {
+    /**
+     * Cancel the posted notification once its timeout passed.
+     */
+    private void setExpiryAlarm(long timeout) {
         Intent intent = new Intent(context, NotificationEventReceiver.class);
 
         intent.putExtra(NotificationEventReceiver.NOTIFICATION_ID, id);
-        intent.putExtra(NotificationEventReceiver.ACTION, attributes.action);
-        intent.putExtra(NotificationEventReceiver.PAYLOAD, attributes.payload);
+        intent.putExtra(NotificationEventReceiver.EXPIRED, true);
+
+        // Use a different action so it does not replace the content and delete intents
+        intent.setAction(NotificationEventReceiver.EXPIRED);
+
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, id, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT);
+
+        // Nothing to show, the device does not need to wake up for it
+        getAlarmManager().set(AlarmManager.ELAPSED_REALTIME, SystemClock.elapsedRealtime() + timeout,
+                pendingIntent);
+    }
+
+    private boolean isGroupSummary() {
+        return getAttributes().isGroupSummary();
+    }
+
+    private boolean isPayloadByReference() {
+        return getAttributes().isPayloadByReference() && getPayload() != null;
+    }
+
+    private PendingIntent getContentIntent(String payloadHandle) {
+        Intent intent = getEventIntent(getAttributes().getAction(), payloadHandle);
+
+        // Tagged, so it does not replace the content intent of the app notification with the same id
+        if (tag != null) {
+            intent.setAction(tag);
+        }
 
         return PendingIntent.getBroadcast(context, id, intent, PendingIntent.FLAG_UPDATE_CURRENT);
     }
 
+    private PendingIntent getActionIntent(NotificationAttributes.Action action, String payloadHandle) {
+        Intent intent = getEventIntent(action.id, payloadHandle);
+        intent.putExtra(NotificationEventReceiver.ACTION_MODE, action.mode);
+
+        // Use a different action per button so they do not replace each other
+        intent.setAction(getTaggedAction(NotificationEventReceiver.ACTION + ":" + action.id));
+
+        return PendingIntent.getBroadcast(context, id, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    private Intent getEventIntent(String action, String payloadHandle) {
+        Intent intent = new Intent(context, NotificationEventReceiver.class);
+
+        intent.putExtra(NotificationEventReceiver.NOTIFICATION_ID, id);
+        intent.putExtra(NotificationEventReceiver.ACTION, action);
+
+        if (payloadHandle != null) {
+            // Only the handle crosses Binder, the payload is resolved on delivery
+            intent.putExtra(NotificationEventReceiver.PAYLOAD_HANDLE, payloadHandle);
+        } else {
+            intent.putExtra(NotificationEventReceiver.PAYLOAD, getPayload());
+        }
+
+        intent.putExtra(NotificationEventReceiver.AUTO_CLEAR, getAttributes().isAutoClear());
+
+        return intent;
+    }
+
+    private PendingIntent getDeleteIntent() {
+        Intent intent = new Intent(context, NotificationEventReceiver.class);
+
+        intent.putExtra(NotificationEventReceiver.NOTIFICATION_ID, id);
+        intent.putExtra(NotificationEventReceiver.DISMISSED, true);
+
+        // Use a different action so it does not replace the content intent
+        intent.setAction(getTaggedAction(NotificationEventReceiver.DISMISSED));
+
+        return PendingIntent.getBroadcast(context, id, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    private String getTaggedAction(String action) {
+        return tag != null ? tag + ":" + action : action;
+    }
+
     private PendingIntent getScheduleNotificationIntent() {
         Intent notificationIntent = new Intent(context, NotificationPublisher.class);
         notificationIntent.putExtra(NotificationPublisher.NOTIFICATION_ID, id);
@@ -0,0 +1,36 @@
+package com.staltz.reactnativeandroidlocalnotification;
+
+import android.content.Context;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Handles the action buttons in "native" mode, without starting the app UI.
+ *
+ * Register handlers when the application is created, they are called on the
+ * main thread of the receiver and should return quickly.
+ */
+public abstract class NotificationActionHandler {
+    private final static Map<String, NotificationActionHandler> handlers = new HashMap<>();
+
+    /**
+     * Register the handler of an action.
+     */
+    public static synchronized void register(String action, NotificationActionHandler handler) {
+        handlers.put(action, handler);
+    }
+
+    public static synchronized void unregister(String action) {
+        handlers.remove(action);
+    }
+
+    static synchronized NotificationActionHandler get(String action) {
+        return handlers.get(action);
+    }
+
+    /**
+     * Handle the action of a notification.
+     */
+    public abstract void onAction(Context context, int notificationID, String action, String payload);
+}
@@ -0,0 +1,34 @@
+package com.staltz.reactnativeandroidlocalnotification;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+import com.facebook.react.HeadlessJsTaskService;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.jstasks.HeadlessJsTaskConfig;
+
+/**
+ * Runs the action buttons in "headless" mode as a headless JS task, without
+ * starting the app UI.
+ */
+public class NotificationActionService extends HeadlessJsTaskService {
+    final static String TASK_KEY = "NotificationAction";
+    final static long TASK_TIMEOUT = 60000;
+
+    @Override
+    protected HeadlessJsTaskConfig getTaskConfig(Intent intent) {
+        Bundle extras = intent.getExtras();
+
+        if (extras == null) {
+            return null;
+        }
+
+        WritableMap event = Arguments.createMap();
+        event.putInt("id", extras.getInt(NotificationEventReceiver.NOTIFICATION_ID));
+        event.putString("action", extras.getString(NotificationEventReceiver.ACTION));
+        event.putString("payload", extras.getString(NotificationEventReceiver.PAYLOAD));
+
+        return new HeadlessJsTaskConfig(TASK_KEY, event, TASK_TIMEOUT, true);
+    }
+}
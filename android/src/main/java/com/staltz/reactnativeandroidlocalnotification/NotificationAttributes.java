@@ -4,11 +4,73 @@ import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 
+/**
+ * The attributes of a notification.
+ *
+ * Numbers and flags are kept as primitives, a bitmask tells which of them are
+ * set, and the strings shared by many notifications (icons, sounds, channels,
+ * groups...) are interned, so large caches of attributes stay small. Records
+ * are stored as JSON with the same field names as before.
+ *
+ * The strings and lists are still public fields, the numbers and flags are
+ * read and written through their accessors so the bitmask stays in sync.
+ */
+@JsonAdapter(NotificationAttributes.Adapter.class)
 public class NotificationAttributes {
-    public Integer id;
+    // Bits of the numbers and flags that are set
+    private final static int ID = 1 << 0;
+    private final static int PAYLOAD_BY_REFERENCE = 1 << 1;
+    private final static int DELAYED = 1 << 2;
+    private final static int DELAY = 1 << 3;
+    private final static int SCHEDULED = 1 << 4;
+    private final static int SEND_AT = 1 << 5;
+    private final static int SEND_AT_YEAR = 1 << 6;
+    private final static int SEND_AT_MONTH = 1 << 7;
+    private final static int SEND_AT_DAY = 1 << 8;
+    private final static int SEND_AT_WEEK_DAY = 1 << 9;
+    private final static int SEND_AT_HOUR = 1 << 10;
+    private final static int SEND_AT_MINUTE = 1 << 11;
+    private final static int REPEAT_TIME = 1 << 12;
+    private final static int REPEAT_COUNT = 1 << 13;
+    private final static int END_AT = 1 << 14;
+    private final static int TOLERANCE = 1 << 15;
+    private final static int ALLOW_WHILE_IDLE = 1 << 16;
+    private final static int PRIORITY = 1 << 17;
+    private final static int AUTO_CLEAR = 1 << 18;
+    private final static int ONLY_ALERT_ONCE = 1 << 19;
+    private final static int WHEN = 1 << 20;
+    private final static int PROGRESS = 1 << 21;
+    private final static int LIFETIME = 1 << 22;
+    private final static int PROGRESS_END = 1 << 23;
+    private final static int USES_CHRONOMETER = 1 << 24;
+    private final static int CHRONOMETER_COUNT_DOWN = 1 << 25;
+    private final static int TIMEOUT_AFTER = 1 << 26;
+    private final static int NUMBER = 1 << 27;
+    private final static int LOCAL_ONLY = 1 << 28;
+    private final static int INBOX_STYLE = 1 << 29;
+    // Set on the group summaries posted by RCTNotificationManager
+    private final static int GROUP_SUMMARY = 1 << 30;
+
+    // Bound of the intern table, strings past it are not shared
+    private final static int INTERN_LIMIT = 4096;
+    private final static HashMap<String, String> internTable = new HashMap<>();
+
+    private int present;
+
+    // Values of the flags
+    private int flags;
+
+    private int id;
     public String subject;
     public String message;
     public String action;
@@ -17,167 +79,959 @@ public class NotificationAttributes {
     public String channelID;
     public String channelName;
 
-    public Boolean delayed;
-    public Integer delay;
+    private int delay;
 
-    public Boolean scheduled;
-    public Long sendAt;
-    public Integer sendAtYear;
-    public Integer sendAtMonth;
-    public Integer sendAtDay;
-    public Integer sendAtWeekDay;
-    public Integer sendAtHour;
-    public Integer sendAtMinute;
+    private long sendAt;
+    private short sendAtYear;
+    private byte sendAtMonth;
+    private byte sendAtDay;
+    private byte sendAtWeekDay;
+    private byte sendAtHour;
+    private byte sendAtMinute;
 
     public String repeatEvery;
     public String repeatType;
-    public Integer repeatTime;
-    public Integer repeatCount;
-    public Long endAt;
+    private int repeatTime;
+    private int repeatCount;
+    private long endAt;
+    private int tolerance;
 
-    public Integer priority;
+    private byte priority;
     public String smallIcon;
     public String largeIcon;
     public String sound;
     public String vibrate;
     public String lights;
-    public Boolean autoClear;
-    public Boolean onlyAlertOnce;
     public String tickerText;
-    public Long when;
+    private long when;
     public String bigText;
     public String bigStyleUrlImage;
     public String bigStyleImageBase64;
     public String subText;
-    public Integer progress;
-    public Integer lifetime;
-    public Integer progressEnd;
+    private int progress;
+    private int lifetime;
+    private int progressEnd;
+    private int timeoutAfter;
     public String color;
-    public Integer number;
+    private int number;
     public String category;
-    public Boolean localOnly;
 
-    public Boolean inboxStyle;
     public String inboxStyleBigContentTitle;
     public String inboxStyleSummaryText;
     public ArrayList<String> inboxStyleLines;
 
     public String group;
+    public ArrayList<Action> actions;
+
+    // Template the attributes that are not set are taken from
+    private String template;
+
+    // Hash of the attributes given by the app, set when the record is stored
+    public String attributesHash;
+
+    // Hashes of the attributes stored out-of-line in the BlobStore
+    public String payloadRef;
+    public String bigStyleImageBase64Ref;
+
+    public boolean hasId() {
+        return (present & ID) != 0;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+        present |= ID;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public void setAction(String action) {
+        this.action = intern(action);
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public boolean hasPayloadByReference() {
+        return (present & PAYLOAD_BY_REFERENCE) != 0;
+    }
+
+    public boolean isPayloadByReference() {
+        return (flags & PAYLOAD_BY_REFERENCE) != 0;
+    }
+
+    public void setPayloadByReference(boolean payloadByReference) {
+        present |= PAYLOAD_BY_REFERENCE;
+        flags = payloadByReference ? flags | PAYLOAD_BY_REFERENCE : flags & ~PAYLOAD_BY_REFERENCE;
+    }
+
+    public String getChannelID() {
+        return channelID;
+    }
+
+    public void setChannelID(String channelID) {
+        this.channelID = intern(channelID);
+    }
+
+    public String getChannelName() {
+        return channelName;
+    }
+
+    public void setChannelName(String channelName) {
+        this.channelName = intern(channelName);
+    }
+
+    public boolean hasDelayed() {
+        return (present & DELAYED) != 0;
+    }
+
+    public boolean isDelayed() {
+        return (flags & DELAYED) != 0;
+    }
+
+    public void setDelayed(boolean delayed) {
+        present |= DELAYED;
+        flags = delayed ? flags | DELAYED : flags & ~DELAYED;
+    }
+
+    public boolean hasDelay() {
+        return (present & DELAY) != 0;
+    }
+
+    public int getDelay() {
+        return delay;
+    }
+
+    public void setDelay(int delay) {
+        this.delay = delay;
+        present |= DELAY;
+    }
+
+    public boolean hasScheduled() {
+        return (present & SCHEDULED) != 0;
+    }
+
+    public boolean isScheduled() {
+        return (flags & SCHEDULED) != 0;
+    }
+
+    public void setScheduled(boolean scheduled) {
+        present |= SCHEDULED;
+        flags = scheduled ? flags | SCHEDULED : flags & ~SCHEDULED;
+    }
+
+    public boolean hasSendAt() {
+        return (present & SEND_AT) != 0;
+    }
+
+    public long getSendAt() {
+        return sendAt;
+    }
+
+    public void setSendAt(long sendAt) {
+        this.sendAt = sendAt;
+        present |= SEND_AT;
+    }
+
+    public boolean hasSendAtYear() {
+        return (present & SEND_AT_YEAR) != 0;
+    }
+
+    public int getSendAtYear() {
+        return sendAtYear;
+    }
+
+    public void setSendAtYear(int sendAtYear) {
+        this.sendAtYear = (short) sendAtYear;
+        present |= SEND_AT_YEAR;
+    }
+
+    public boolean hasSendAtMonth() {
+        return (present & SEND_AT_MONTH) != 0;
+    }
+
+    public int getSendAtMonth() {
+        return sendAtMonth;
+    }
+
+    public void setSendAtMonth(int sendAtMonth) {
+        this.sendAtMonth = (byte) sendAtMonth;
+        present |= SEND_AT_MONTH;
+    }
+
+    public boolean hasSendAtDay() {
+        return (present & SEND_AT_DAY) != 0;
+    }
+
+    public int getSendAtDay() {
+        return sendAtDay;
+    }
+
+    public void setSendAtDay(int sendAtDay) {
+        this.sendAtDay = (byte) sendAtDay;
+        present |= SEND_AT_DAY;
+    }
+
+    public boolean hasSendAtWeekDay() {
+        return (present & SEND_AT_WEEK_DAY) != 0;
+    }
+
+    public int getSendAtWeekDay() {
+        return sendAtWeekDay;
+    }
+
+    public void setSendAtWeekDay(int sendAtWeekDay) {
+        this.sendAtWeekDay = (byte) sendAtWeekDay;
+        present |= SEND_AT_WEEK_DAY;
+    }
+
+    public boolean hasSendAtHour() {
+        return (present & SEND_AT_HOUR) != 0;
+    }
+
+    public int getSendAtHour() {
+        return sendAtHour;
+    }
+
+    public void setSendAtHour(int sendAtHour) {
+        this.sendAtHour = (byte) sendAtHour;
+        present |= SEND_AT_HOUR;
+    }
+
+    public boolean hasSendAtMinute() {
+        return (present & SEND_AT_MINUTE) != 0;
+    }
+
+    public int getSendAtMinute() {
+        return sendAtMinute;
+    }
+
+    public void setSendAtMinute(int sendAtMinute) {
+        this.sendAtMinute = (byte) sendAtMinute;
+        present |= SEND_AT_MINUTE;
+    }
+
+    public String getRepeatEvery() {
+        return repeatEvery;
+    }
+
+    public void setRepeatEvery(String repeatEvery) {
+        this.repeatEvery = intern(repeatEvery);
+    }
+
+    public String getRepeatType() {
+        return repeatType;
+    }
+
+    public void setRepeatType(String repeatType) {
+        this.repeatType = intern(repeatType);
+    }
+
+    public boolean hasRepeatTime() {
+        return (present & REPEAT_TIME) != 0;
+    }
+
+    public int getRepeatTime() {
+        return repeatTime;
+    }
+
+    public void setRepeatTime(int repeatTime) {
+        this.repeatTime = repeatTime;
+        present |= REPEAT_TIME;
+    }
+
+    public boolean hasRepeatCount() {
+        return (present & REPEAT_COUNT) != 0;
+    }
+
+    public int getRepeatCount() {
+        return repeatCount;
+    }
+
+    public void setRepeatCount(int repeatCount) {
+        this.repeatCount = repeatCount;
+        present |= REPEAT_COUNT;
+    }
+
+    public boolean hasEndAt() {
+        return (present & END_AT) != 0;
+    }
+
+    public long getEndAt() {
+        return endAt;
+    }
+
+    public void setEndAt(long endAt) {
+        this.endAt = endAt;
+        present |= END_AT;
+    }
+
+    public boolean hasTolerance() {
+        return (present & TOLERANCE) != 0;
+    }
+
+    public int getTolerance() {
+        return tolerance;
+    }
+
+    public void setTolerance(int tolerance) {
+        this.tolerance = tolerance;
+        present |= TOLERANCE;
+    }
+
+    public boolean hasAllowWhileIdle() {
+        return (present & ALLOW_WHILE_IDLE) != 0;
+    }
+
+    public boolean isAllowWhileIdle() {
+        return (flags & ALLOW_WHILE_IDLE) != 0;
+    }
+
+    public void setAllowWhileIdle(boolean allowWhileIdle) {
+        present |= ALLOW_WHILE_IDLE;
+        flags = allowWhileIdle ? flags | ALLOW_WHILE_IDLE : flags & ~ALLOW_WHILE_IDLE;
+    }
+
+    public boolean hasPriority() {
+        return (present & PRIORITY) != 0;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = (byte) priority;
+        present |= PRIORITY;
+    }
+
+    public String getSmallIcon() {
+        return smallIcon;
+    }
+
+    public void setSmallIcon(String smallIcon) {
+        this.smallIcon = intern(smallIcon);
+    }
+
+    public String getLargeIcon() {
+        return largeIcon;
+    }
+
+    public void setLargeIcon(String largeIcon) {
+        this.largeIcon = intern(largeIcon);
+    }
+
+    public String getSound() {
+        return sound;
+    }
+
+    public void setSound(String sound) {
+        this.sound = intern(sound);
+    }
+
+    public String getVibrate() {
+        return vibrate;
+    }
+
+    public void setVibrate(String vibrate) {
+        this.vibrate = intern(vibrate);
+    }
+
+    public String getLights() {
+        return lights;
+    }
+
+    public void setLights(String lights) {
+        this.lights = intern(lights);
+    }
+
+    public boolean hasAutoClear() {
+        return (present & AUTO_CLEAR) != 0;
+    }
+
+    public boolean isAutoClear() {
+        return (flags & AUTO_CLEAR) != 0;
+    }
+
+    public void setAutoClear(boolean autoClear) {
+        present |= AUTO_CLEAR;
+        flags = autoClear ? flags | AUTO_CLEAR : flags & ~AUTO_CLEAR;
+    }
+
+    public boolean hasOnlyAlertOnce() {
+        return (present & ONLY_ALERT_ONCE) != 0;
+    }
+
+    public boolean isOnlyAlertOnce() {
+        return (flags & ONLY_ALERT_ONCE) != 0;
+    }
+
+    public void setOnlyAlertOnce(boolean onlyAlertOnce) {
+        present |= ONLY_ALERT_ONCE;
+        flags = onlyAlertOnce ? flags | ONLY_ALERT_ONCE : flags & ~ONLY_ALERT_ONCE;
+    }
+
+    public String getTickerText() {
+        return tickerText;
+    }
+
+    public void setTickerText(String tickerText) {
+        this.tickerText = tickerText;
+    }
+
+    public boolean hasWhen() {
+        return (present & WHEN) != 0;
+    }
+
+    public long getWhen() {
+        return when;
+    }
+
+    public void setWhen(long when) {
+        this.when = when;
+        present |= WHEN;
+    }
+
+    public String getBigText() {
+        return bigText;
+    }
+
+    public void setBigText(String bigText) {
+        this.bigText = bigText;
+    }
+
+    public String getBigStyleUrlImage() {
+        return bigStyleUrlImage;
+    }
+
+    public void setBigStyleUrlImage(String bigStyleUrlImage) {
+        this.bigStyleUrlImage = bigStyleUrlImage;
+    }
+
+    public String getBigStyleImageBase64() {
+        return bigStyleImageBase64;
+    }
+
+    public void setBigStyleImageBase64(String bigStyleImageBase64) {
+        this.bigStyleImageBase64 = bigStyleImageBase64;
+    }
+
+    public String getSubText() {
+        return subText;
+    }
+
+    public void setSubText(String subText) {
+        this.subText = subText;
+    }
+
+    public boolean hasProgress() {
+        return (present & PROGRESS) != 0;
+    }
+
+    public int getProgress() {
+        return progress;
+    }
+
+    public void setProgress(int progress) {
+        this.progress = progress;
+        present |= PROGRESS;
+    }
+
+    public boolean hasLifetime() {
+        return (present & LIFETIME) != 0;
+    }
+
+    public int getLifetime() {
+        return lifetime;
+    }
+
+    public void setLifetime(int lifetime) {
+        this.lifetime = lifetime;
+        present |= LIFETIME;
+    }
+
+    public boolean hasProgressEnd() {
+        return (present & PROGRESS_END) != 0;
+    }
+
+    public int getProgressEnd() {
+        return progressEnd;
+    }
+
+    public void setProgressEnd(int progressEnd) {
+        this.progressEnd = progressEnd;
+        present |= PROGRESS_END;
+    }
+
+    public boolean hasUsesChronometer() {
+        return (present & USES_CHRONOMETER) != 0;
+    }
+
+    public boolean isUsesChronometer() {
+        return (flags & USES_CHRONOMETER) != 0;
+    }
+
+    public void setUsesChronometer(boolean usesChronometer) {
+        present |= USES_CHRONOMETER;
+        flags = usesChronometer ? flags | USES_CHRONOMETER : flags & ~USES_CHRONOMETER;
+    }
+
+    public boolean hasChronometerCountDown() {
+        return (present & CHRONOMETER_COUNT_DOWN) != 0;
+    }
+
+    public boolean isChronometerCountDown() {
+        return (flags & CHRONOMETER_COUNT_DOWN) != 0;
+    }
+
+    public void setChronometerCountDown(boolean chronometerCountDown) {
+        present |= CHRONOMETER_COUNT_DOWN;
+        flags = chronometerCountDown ? flags | CHRONOMETER_COUNT_DOWN : flags & ~CHRONOMETER_COUNT_DOWN;
+    }
+
+    public boolean hasTimeoutAfter() {
+        return (present & TIMEOUT_AFTER) != 0;
+    }
+
+    public int getTimeoutAfter() {
+        return timeoutAfter;
+    }
+
+    public void setTimeoutAfter(int timeoutAfter) {
+        this.timeoutAfter = timeoutAfter;
+        present |= TIMEOUT_AFTER;
+    }
+
+    public String getColor() {
+        return color;
+    }
+
+    public void setColor(String color) {
+        this.color = intern(color);
+    }
+
+    public boolean hasNumber() {
+        return (present & NUMBER) != 0;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    public void setNumber(int number) {
+        this.number = number;
+        present |= NUMBER;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = intern(category);
+    }
+
+    public boolean hasLocalOnly() {
+        return (present & LOCAL_ONLY) != 0;
+    }
+
+    public boolean isLocalOnly() {
+        return (flags & LOCAL_ONLY) != 0;
+    }
+
+    public void setLocalOnly(boolean localOnly) {
+        present |= LOCAL_ONLY;
+        flags = localOnly ? flags | LOCAL_ONLY : flags & ~LOCAL_ONLY;
+    }
+
+    public boolean hasInboxStyle() {
+        return (present & INBOX_STYLE) != 0;
+    }
+
+    public boolean isInboxStyle() {
+        return (flags & INBOX_STYLE) != 0;
+    }
+
+    public void setInboxStyle(boolean inboxStyle) {
+        present |= INBOX_STYLE;
+        flags = inboxStyle ? flags | INBOX_STYLE : flags & ~INBOX_STYLE;
+    }
+
+    public String getInboxStyleBigContentTitle() {
+        return inboxStyleBigContentTitle;
+    }
+
+    public void setInboxStyleBigContentTitle(String inboxStyleBigContentTitle) {
+        this.inboxStyleBigContentTitle = inboxStyleBigContentTitle;
+    }
+
+    public String getInboxStyleSummaryText() {
+        return inboxStyleSummaryText;
+    }
+
+    public void setInboxStyleSummaryText(String inboxStyleSummaryText) {
+        this.inboxStyleSummaryText = inboxStyleSummaryText;
+    }
+
+    public ArrayList<String> getInboxStyleLines() {
+        return inboxStyleLines;
+    }
+
+    public void setInboxStyleLines(ArrayList<String> inboxStyleLines) {
+        this.inboxStyleLines = inboxStyleLines;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public void setGroup(String group) {
+        this.group = intern(group);
+    }
+
+    public ArrayList<Action> getActions() {
+        return actions;
+    }
 
+    public void setActions(ArrayList<Action> actions) {
+        this.actions = actions;
+    }
+
+    public boolean hasGroupSummary() {
+        return (present & GROUP_SUMMARY) != 0;
+    }
+
+    public boolean isGroupSummary() {
+        return (flags & GROUP_SUMMARY) != 0;
+    }
+
+    public void setGroupSummary(boolean groupSummary) {
+        present |= GROUP_SUMMARY;
+        flags = groupSummary ? flags | GROUP_SUMMARY : flags & ~GROUP_SUMMARY;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public void setTemplate(String template) {
+        this.template = intern(template);
+    }
+
+    public String getAttributesHash() {
+        return attributesHash;
+    }
+
+    public void setAttributesHash(String attributesHash) {
+        this.attributesHash = attributesHash;
+    }
+
+    public String getPayloadRef() {
+        return payloadRef;
+    }
+
+    public void setPayloadRef(String payloadRef) {
+        this.payloadRef = payloadRef;
+    }
+
+    public String getBigStyleImageBase64Ref() {
+        return bigStyleImageBase64Ref;
+    }
+
+    public void setBigStyleImageBase64Ref(String bigStyleImageBase64Ref) {
+        this.bigStyleImageBase64Ref = bigStyleImageBase64Ref;
+    }
+
+    /**
+     * Take the attributes that are not set here from other attributes, e.g. a
+     * template.
+     */
+    public void inherit(NotificationAttributes other) {
+        int inherited = other.present & ~present;
+
+        present |= inherited;
+        flags |= other.flags & inherited;
+
+        if ((inherited & ID) != 0)
+            id = other.id;
+        if (subject == null)
+            subject = other.subject;
+        if (message == null)
+            message = other.message;
+        if (action == null)
+            action = other.action;
+        if (payload == null)
+            payload = other.payload;
+        if (channelID == null)
+            channelID = other.channelID;
+        if (channelName == null)
+            channelName = other.channelName;
+        if ((inherited & DELAY) != 0)
+            delay = other.delay;
+        if ((inherited & SEND_AT) != 0)
+            sendAt = other.sendAt;
+        if ((inherited & SEND_AT_YEAR) != 0)
+            sendAtYear = other.sendAtYear;
+        if ((inherited & SEND_AT_MONTH) != 0)
+            sendAtMonth = other.sendAtMonth;
+        if ((inherited & SEND_AT_DAY) != 0)
+            sendAtDay = other.sendAtDay;
+        if ((inherited & SEND_AT_WEEK_DAY) != 0)
+            sendAtWeekDay = other.sendAtWeekDay;
+        if ((inherited & SEND_AT_HOUR) != 0)
+            sendAtHour = other.sendAtHour;
+        if ((inherited & SEND_AT_MINUTE) != 0)
+            sendAtMinute = other.sendAtMinute;
+        if (repeatEvery == null)
+            repeatEvery = other.repeatEvery;
+        if (repeatType == null)
+            repeatType = other.repeatType;
+        if ((inherited & REPEAT_TIME) != 0)
+            repeatTime = other.repeatTime;
+        if ((inherited & REPEAT_COUNT) != 0)
+            repeatCount = other.repeatCount;
+        if ((inherited & END_AT) != 0)
+            endAt = other.endAt;
+        if ((inherited & TOLERANCE) != 0)
+            tolerance = other.tolerance;
+        if ((inherited & PRIORITY) != 0)
+            priority = other.priority;
+        if (smallIcon == null)
+            smallIcon = other.smallIcon;
+        if (largeIcon == null)
+            largeIcon = other.largeIcon;
+        if (sound == null)
+            sound = other.sound;
+        if (vibrate == null)
+            vibrate = other.vibrate;
+        if (lights == null)
+            lights = other.lights;
+        if (tickerText == null)
+            tickerText = other.tickerText;
+        if ((inherited & WHEN) != 0)
+            when = other.when;
+        if (bigText == null)
+            bigText = other.bigText;
+        if (bigStyleUrlImage == null)
+            bigStyleUrlImage = other.bigStyleUrlImage;
+        if (bigStyleImageBase64 == null)
+            bigStyleImageBase64 = other.bigStyleImageBase64;
+        if (subText == null)
+            subText = other.subText;
+        if ((inherited & PROGRESS) != 0)
+            progress = other.progress;
+        if ((inherited & LIFETIME) != 0)
+            lifetime = other.lifetime;
+        if ((inherited & PROGRESS_END) != 0)
+            progressEnd = other.progressEnd;
+        if ((inherited & TIMEOUT_AFTER) != 0)
+            timeoutAfter = other.timeoutAfter;
+        if (color == null)
+            color = other.color;
+        if ((inherited & NUMBER) != 0)
+            number = other.number;
+        if (category == null)
+            category = other.category;
+        if (inboxStyleBigContentTitle == null)
+            inboxStyleBigContentTitle = other.inboxStyleBigContentTitle;
+        if (inboxStyleSummaryText == null)
+            inboxStyleSummaryText = other.inboxStyleSummaryText;
+        if (inboxStyleLines == null)
+            inboxStyleLines = other.inboxStyleLines;
+        if (group == null)
+            group = other.group;
+        if (actions == null)
+            actions = other.actions;
+        if (template == null)
+            template = other.template;
+        if (attributesHash == null)
+            attributesHash = other.attributesHash;
+        if (payloadRef == null)
+            payloadRef = other.payloadRef;
+        if (bigStyleImageBase64Ref == null)
+            bigStyleImageBase64Ref = other.bigStyleImageBase64Ref;
+    }
+
+    /**
+     * Load the attributes given by the app. The defaults are not applied to the
+     * attributes created from a template, they are taken from the template.
+     */
     public void loadFromReadableMap(ReadableMap readableMap) {
+        if (readableMap.hasKey("template"))
+            setTemplate(readableMap.getString("template"));
+
         if (readableMap.hasKey("id"))
-            id = readableMap.getInt("id");
+            setId(readableMap.getInt("id"));
         if (readableMap.hasKey("subject"))
-            subject = readableMap.getString("subject");
+            setSubject(readableMap.getString("subject"));
         if (readableMap.hasKey("message"))
-            message = readableMap.getString("message");
+            setMessage(readableMap.getString("message"));
         if (readableMap.hasKey("action"))
-            action = readableMap.getString("action");
+            setAction(readableMap.getString("action"));
         if (readableMap.hasKey("payload"))
-            payload = readableMap.getString("payload");
+            setPayload(readableMap.getString("payload"));
+        if (readableMap.hasKey("payloadByReference"))
+            setPayloadByReference(readableMap.getBoolean("payloadByReference"));
 
         if (readableMap.hasKey("channelID"))
-            channelID = readableMap.getString("channelID");
+            setChannelID(readableMap.getString("channelID"));
         if (readableMap.hasKey("channelName"))
-            channelName = readableMap.getString("channelName");
+            setChannelName(readableMap.getString("channelName"));
 
         if (readableMap.hasKey("delayed"))
-            delayed = readableMap.getBoolean("delayed");
+            setDelayed(readableMap.getBoolean("delayed"));
         if (readableMap.hasKey("delay"))
-            delay = readableMap.getInt("delay");
+            setDelay(readableMap.getInt("delay"));
 
         if (readableMap.hasKey("scheduled"))
-            scheduled = readableMap.getBoolean("scheduled");
+            setScheduled(readableMap.getBoolean("scheduled"));
         if (readableMap.hasKey("sendAt"))
-            sendAt = Long.parseLong(readableMap.getString("sendAt"));
+            setSendAt(Long.parseLong(readableMap.getString("sendAt")));
         if (readableMap.hasKey("sendAtYear"))
-            sendAtYear = readableMap.getInt("sendAtYear");
+            setSendAtYear(readableMap.getInt("sendAtYear"));
         if (readableMap.hasKey("sendAtMonth"))
-            sendAtMonth = readableMap.getInt("sendAtMonth");
+            setSendAtMonth(readableMap.getInt("sendAtMonth"));
         if (readableMap.hasKey("sendAtDay"))
-            sendAtDay = readableMap.getInt("sendAtDay");
+            setSendAtDay(readableMap.getInt("sendAtDay"));
         if (readableMap.hasKey("sendAtWeekDay"))
-            sendAtWeekDay = readableMap.getInt("sendAtWeekDay");
+            setSendAtWeekDay(readableMap.getInt("sendAtWeekDay"));
         if (readableMap.hasKey("sendAtHour"))
-            sendAtHour = readableMap.getInt("sendAtHour");
+            setSendAtHour(readableMap.getInt("sendAtHour"));
         if (readableMap.hasKey("sendAtMinute"))
-            sendAtMinute = readableMap.getInt("sendAtMinute");
+            setSendAtMinute(readableMap.getInt("sendAtMinute"));
 
         if (readableMap.hasKey("repeatEvery"))
-            repeatEvery = readableMap.getString("repeatEvery");
+            setRepeatEvery(readableMap.getString("repeatEvery"));
         if (readableMap.hasKey("repeatType"))
-            repeatType = readableMap.getString("repeatType");
+            setRepeatType(readableMap.getString("repeatType"));
         if (readableMap.hasKey("repeatTime"))
-            repeatTime = readableMap.getInt("repeatTime");
+            setRepeatTime(readableMap.getInt("repeatTime"));
         if (readableMap.hasKey("repeatCount"))
-            repeatCount = readableMap.getInt("repeatCount");
+            setRepeatCount(readableMap.getInt("repeatCount"));
         if (readableMap.hasKey("endAt"))
-            endAt = Long.parseLong(readableMap.getString("endAt"));
+            setEndAt(Long.parseLong(readableMap.getString("endAt")));
+        if (readableMap.hasKey("tolerance"))
+            setTolerance(readableMap.getInt("tolerance"));
+        if (readableMap.hasKey("allowWhileIdle"))
+            setAllowWhileIdle(readableMap.getBoolean("allowWhileIdle"));
 
         if (readableMap.hasKey("priority"))
-            priority = readableMap.getInt("priority");
+            setPriority(readableMap.getInt("priority"));
         if (readableMap.hasKey("smallIcon"))
-            smallIcon = readableMap.getString("smallIcon");
+            setSmallIcon(readableMap.getString("smallIcon"));
         if (readableMap.hasKey("largeIcon"))
-            largeIcon = readableMap.getString("largeIcon");
+            setLargeIcon(readableMap.getString("largeIcon"));
         if (readableMap.hasKey("sound"))
-            sound = readableMap.getString("sound");
+            setSound(readableMap.getString("sound"));
         if (readableMap.hasKey("vibrate"))
-            vibrate = readableMap.getString("vibrate");
+            setVibrate(readableMap.getString("vibrate"));
         if (readableMap.hasKey("lights"))
-            lights = readableMap.getString("lights");
+            setLights(readableMap.getString("lights"));
         if (readableMap.hasKey("autoClear"))
-            autoClear = readableMap.getBoolean("autoClear");
-        else
-            autoClear = true;
+            setAutoClear(readableMap.getBoolean("autoClear"));
+        else if (getTemplate() == null)
+            setAutoClear(true);
         if (readableMap.hasKey("onlyAlertOnce"))
-            onlyAlertOnce = readableMap.getBoolean("onlyAlertOnce");
+            setOnlyAlertOnce(readableMap.getBoolean("onlyAlertOnce"));
         if (readableMap.hasKey("tickerText"))
-            tickerText = readableMap.getString("tickerText");
+            setTickerText(readableMap.getString("tickerText"));
         if (readableMap.hasKey("when"))
-            when = Long.parseLong(readableMap.getString("when"));
+            setWhen(Long.parseLong(readableMap.getString("when")));
         if (readableMap.hasKey("bigText"))
-            bigText = readableMap.getString("bigText");
+            setBigText(readableMap.getString("bigText"));
         if (readableMap.hasKey("bigStyleUrlImage"))
-            bigStyleUrlImage = readableMap.getString("bigStyleUrlImage");
+            setBigStyleUrlImage(readableMap.getString("bigStyleUrlImage"));
         if (readableMap.hasKey("bigStyleImageBase64"))
-            bigStyleImageBase64 = readableMap.getString("bigStyleImageBase64");
+            setBigStyleImageBase64(readableMap.getString("bigStyleImageBase64"));
         if (readableMap.hasKey("subText"))
-            subText = readableMap.getString("subText");
+            setSubText(readableMap.getString("subText"));
         if (readableMap.hasKey("progress"))
-            progress = readableMap.getInt("progress");
+            setProgress(readableMap.getInt("progress"));
         if (readableMap.hasKey("progressEnd"))
-            progressEnd = readableMap.getInt("progressEnd");
+            setProgressEnd(readableMap.getInt("progressEnd"));
         if (readableMap.hasKey("lifetime"))
-            lifetime = readableMap.getInt("lifetime");
+            setLifetime(readableMap.getInt("lifetime"));
+        if (readableMap.hasKey("usesChronometer"))
+            setUsesChronometer(readableMap.getBoolean("usesChronometer"));
+        if (readableMap.hasKey("chronometerCountDown"))
+            setChronometerCountDown(readableMap.getBoolean("chronometerCountDown"));
+        if (readableMap.hasKey("timeoutAfter"))
+            setTimeoutAfter(readableMap.getInt("timeoutAfter"));
 
         if (readableMap.hasKey("color"))
-            color = readableMap.getString("color");
+            setColor(readableMap.getString("color"));
         if (readableMap.hasKey("number"))
-            number = readableMap.getInt("number");
+            setNumber(readableMap.getInt("number"));
         if (readableMap.hasKey("category"))
-            category = readableMap.getString("category");
+            setCategory(readableMap.getString("category"));
         if (readableMap.hasKey("localOnly"))
-            localOnly = readableMap.getBoolean("localOnly");
+            setLocalOnly(readableMap.getBoolean("localOnly"));
         if (readableMap.hasKey("group"))
-            group = readableMap.getString("group");
+            setGroup(readableMap.getString("group"));
+
+        if (readableMap.hasKey("actions")) {
+            ReadableArray actionArray = readableMap.getArray("actions");
+            ArrayList<Action> buttons = new ArrayList<>();
+
+            for (int i = 0; i < actionArray.size(); i++) {
+                ReadableMap actionMap = actionArray.getMap(i);
+                Action action = new Action();
+
+                action.id = actionMap.getString("id");
+                action.title = actionMap.getString("title");
+                if (actionMap.hasKey("icon"))
+                    action.icon = actionMap.getString("icon");
+                action.mode = actionMap.hasKey("mode") ? actionMap.getString("mode") : Action.MODE_FOREGROUND;
+
+                buttons.add(action);
+            }
+
+            setActions(buttons);
+        }
 
         if (readableMap.hasKey("inboxStyle")) {
-            inboxStyle = true;
+            setInboxStyle(true);
             ReadableMap inboxStyleMap = readableMap.getMap("inboxStyle");
 
-            inboxStyleBigContentTitle = inboxStyleMap.getString("bigContentTitle");
-            inboxStyleSummaryText = inboxStyleMap.getString("summaryText");
+            setInboxStyleBigContentTitle(inboxStyleMap.getString("bigContentTitle"));
+            setInboxStyleSummaryText(inboxStyleMap.getString("summaryText"));
 
             ReadableArray inboxLines = inboxStyleMap.getArray("lines");
             if (inboxLines != null) {
-                inboxStyleLines = new ArrayList<>();
+                ArrayList<String> lines = new ArrayList<>();
                 for (int i = 0; i < inboxLines.size(); i++) {
-                    inboxStyleLines.add(inboxLines.getString(i));
+                    lines.add(inboxLines.getString(i));
                 }
+                setInboxStyleLines(lines);
             }
-        } else {
-            inboxStyle = false;
+        } else if (getTemplate() == null) {
+            setInboxStyle(false);
         }
 
     }
@@ -185,115 +1039,594 @@ public class NotificationAttributes {
     public ReadableMap asReadableMap() {
         WritableMap writableMap = new com.facebook.react.bridge.WritableNativeMap();
 
-        if (id != null)
-            writableMap.putInt("id", id);
-        if (subject != null)
-            writableMap.putString("subject", subject);
-        if (message != null)
-            writableMap.putString("message", message);
-        if (action != null)
-            writableMap.putString("action", action);
-        if (payload != null)
-            writableMap.putString("payload", payload);
-
-        if (delayed != null)
-            writableMap.putBoolean("delayed", delayed);
-        if (delay != null)
-            writableMap.putInt("delay", delay);
-
-        if (scheduled != null)
-            writableMap.putBoolean("scheduled", scheduled);
-        if (sendAt != null)
-            writableMap.putString("sendAt", Long.toString(sendAt));
-        if (sendAtYear != null)
-            writableMap.putInt("sendAtYear", sendAtYear);
-        if (sendAtMonth != null)
-            writableMap.putInt("sendAtMonth", sendAtMonth);
-        if (sendAtDay != null)
-            writableMap.putInt("sendAtDay", sendAtDay);
-        if (sendAtWeekDay != null)
-            writableMap.putInt("sendAtWeekDay", sendAtWeekDay);
-        if (sendAtHour != null)
-            writableMap.putInt("sendAtHour", sendAtHour);
-        if (sendAtMinute != null)
-            writableMap.putInt("sendAtMinute", sendAtMinute);
-
-        if (repeatEvery != null)
-            writableMap.putString("repeatEvery", repeatEvery);
-        if (repeatType != null)
-            writableMap.putString("repeatType", repeatType);
-        if (repeatTime != null)
-            writableMap.putInt("repeatTime", repeatTime);
-        if (repeatCount != null)
-            writableMap.putInt("repeatCount", repeatCount);
-        if (endAt != null)
-            writableMap.putString("endAt", Long.toString(endAt));
-
-        if (priority != null)
-            writableMap.putInt("priority", priority);
-        if (smallIcon != null)
-            writableMap.putString("smallIcon", smallIcon);
-        if (largeIcon != null)
-            writableMap.putString("largeIcon", largeIcon);
-        if (sound != null)
-            writableMap.putString("sound", sound);
-        if (vibrate != null)
-            writableMap.putString("vibrate", vibrate);
-        if (lights != null)
-            writableMap.putString("lights", lights);
-        if (autoClear != null)
-            writableMap.putBoolean("autoClear", autoClear);
-        if (onlyAlertOnce != null)
-            writableMap.putBoolean("onlyAlertOnce", onlyAlertOnce);
-        if (tickerText != null)
-            writableMap.putString("tickerText", tickerText);
-        if (when != null)
-            writableMap.putString("when", Long.toString(when));
-        if (bigText != null)
-            writableMap.putString("bigText", bigText);
-        if (bigStyleImageBase64 != null)
-            writableMap.putString("bigStyleImageBase64", bigStyleImageBase64);
-        if (bigStyleUrlImage != null)
-            writableMap.putString("bigStyleImageBase64", bigStyleUrlImage);
-        if (subText != null)
-            writableMap.putString("subText", subText);
-        if (progress != null)
-            writableMap.putInt("progress", progress);
-        if (color != null)
-            writableMap.putString("color", color);
-        if (number != null)
-            writableMap.putInt("number", number);
-        if (category != null)
-            writableMap.putString("category", category);
-        if (localOnly != null)
-            writableMap.putBoolean("localOnly", localOnly);
-        if (group != null)
-            writableMap.putString("group", group);
-
-        if (progressEnd != null)
-            writableMap.putInt("progressEnd", progressEnd);
-        if (lifetime != null)
-            writableMap.putInt("lifetime", lifetime);
-
-        if (inboxStyle) {
-
-            WritableMap inboxStyle = new com.facebook.react.bridge.WritableNativeMap();
-            if (inboxStyleBigContentTitle != null)
-                inboxStyle.putString("bigContentTitle", inboxStyleBigContentTitle);
-            if (inboxStyleSummaryText != null)
-                inboxStyle.putString("summaryText", inboxStyleSummaryText);
-
-            if (inboxStyleLines != null) {
+        if (hasId())
+            writableMap.putInt("id", getId());
+        if (getSubject() != null)
+            writableMap.putString("subject", getSubject());
+        if (getMessage() != null)
+            writableMap.putString("message", getMessage());
+        if (getAction() != null)
+            writableMap.putString("action", getAction());
+        if (getPayload() != null)
+            writableMap.putString("payload", getPayload());
+        if (hasPayloadByReference())
+            writableMap.putBoolean("payloadByReference", isPayloadByReference());
+
+        if (hasDelayed())
+            writableMap.putBoolean("delayed", isDelayed());
+        if (hasDelay())
+            writableMap.putInt("delay", getDelay());
+
+        if (hasScheduled())
+            writableMap.putBoolean("scheduled", isScheduled());
+        if (hasSendAt())
+            writableMap.putString("sendAt", Long.toString(getSendAt()));
+        if (hasSendAtYear())
+            writableMap.putInt("sendAtYear", getSendAtYear());
+        if (hasSendAtMonth())
+            writableMap.putInt("sendAtMonth", getSendAtMonth());
+        if (hasSendAtDay())
+            writableMap.putInt("sendAtDay", getSendAtDay());
+        if (hasSendAtWeekDay())
+            writableMap.putInt("sendAtWeekDay", getSendAtWeekDay());
+        if (hasSendAtHour())
+            writableMap.putInt("sendAtHour", getSendAtHour());
+        if (hasSendAtMinute())
+            writableMap.putInt("sendAtMinute", getSendAtMinute());
+
+        if (getRepeatEvery() != null)
+            writableMap.putString("repeatEvery", getRepeatEvery());
+        if (getRepeatType() != null)
+            writableMap.putString("repeatType", getRepeatType());
+        if (hasRepeatTime())
+            writableMap.putInt("repeatTime", getRepeatTime());
+        if (hasRepeatCount())
+            writableMap.putInt("repeatCount", getRepeatCount());
+        if (hasEndAt())
+            writableMap.putString("endAt", Long.toString(getEndAt()));
+        if (hasTolerance())
+            writableMap.putInt("tolerance", getTolerance());
+        if (hasAllowWhileIdle())
+            writableMap.putBoolean("allowWhileIdle", isAllowWhileIdle());
+
+        if (hasPriority())
+            writableMap.putInt("priority", getPriority());
+        if (getSmallIcon() != null)
+            writableMap.putString("smallIcon", getSmallIcon());
+        if (getLargeIcon() != null)
+            writableMap.putString("largeIcon", getLargeIcon());
+        if (getSound() != null)
+            writableMap.putString("sound", getSound());
+        if (getVibrate() != null)
+            writableMap.putString("vibrate", getVibrate());
+        if (getLights() != null)
+            writableMap.putString("lights", getLights());
+        if (hasAutoClear())
+            writableMap.putBoolean("autoClear", isAutoClear());
+        if (hasOnlyAlertOnce())
+            writableMap.putBoolean("onlyAlertOnce", isOnlyAlertOnce());
+        if (getTickerText() != null)
+            writableMap.putString("tickerText", getTickerText());
+        if (hasWhen())
+            writableMap.putString("when", Long.toString(getWhen()));
+        if (getBigText() != null)
+            writableMap.putString("bigText", getBigText());
+        if (getBigStyleImageBase64() != null)
+            writableMap.putString("bigStyleImageBase64", getBigStyleImageBase64());
+        if (getBigStyleUrlImage() != null)
+            writableMap.putString("bigStyleUrlImage", getBigStyleUrlImage());
+        if (getSubText() != null)
+            writableMap.putString("subText", getSubText());
+        if (hasProgress())
+            writableMap.putInt("progress", getProgress());
+        if (getColor() != null)
+            writableMap.putString("color", getColor());
+        if (hasNumber())
+            writableMap.putInt("number", getNumber());
+        if (getCategory() != null)
+            writableMap.putString("category", getCategory());
+        if (hasLocalOnly())
+            writableMap.putBoolean("localOnly", isLocalOnly());
+        if (getGroup() != null)
+            writableMap.putString("group", getGroup());
+        if (getTemplate() != null)
+            writableMap.putString("template", getTemplate());
+
+        if (getActions() != null) {
+            WritableArray actionArray = new com.facebook.react.bridge.WritableNativeArray();
+
+            for (Action action : getActions()) {
+                WritableMap actionMap = new com.facebook.react.bridge.WritableNativeMap();
+                actionMap.putString("id", action.id);
+                actionMap.putString("title", action.title);
+                if (action.icon != null)
+                    actionMap.putString("icon", action.icon);
+                actionMap.putString("mode", action.mode);
+                actionArray.pushMap(actionMap);
+            }
+
+            writableMap.putArray("actions", actionArray);
+        }
+
+        if (hasProgressEnd())
+            writableMap.putInt("progressEnd", getProgressEnd());
+        if (hasLifetime())
+            writableMap.putInt("lifetime", getLifetime());
+        if (hasUsesChronometer())
+            writableMap.putBoolean("usesChronometer", isUsesChronometer());
+        if (hasChronometerCountDown())
+            writableMap.putBoolean("chronometerCountDown", isChronometerCountDown());
+        if (hasTimeoutAfter())
+            writableMap.putInt("timeoutAfter", getTimeoutAfter());
+
+        if (isInboxStyle()) {
+
+            WritableMap inboxStyleMap = new com.facebook.react.bridge.WritableNativeMap();
+            if (getInboxStyleBigContentTitle() != null)
+                inboxStyleMap.putString("bigContentTitle", getInboxStyleBigContentTitle());
+            if (getInboxStyleSummaryText() != null)
+                inboxStyleMap.putString("summaryText", getInboxStyleSummaryText());
+
+            if (getInboxStyleLines() != null) {
                 WritableArray inboxLines = new com.facebook.react.bridge.WritableNativeArray();
-                for (int i = 0; i < inboxStyleLines.size(); i++) {
-                    inboxLines.pushString(inboxStyleLines.get(i));
+                for (int i = 0; i < getInboxStyleLines().size(); i++) {
+                    inboxLines.pushString(getInboxStyleLines().get(i));
                 }
-                inboxStyle.putArray("lines", inboxLines);
+                inboxStyleMap.putArray("lines", inboxLines);
             }
 
-            writableMap.putMap("inboxStyle", inboxStyle);
+            writableMap.putMap("inboxStyle", inboxStyleMap);
         }
 
         return writableMap;
     }
+
+    private static String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        synchronized (internTable) {
+            String interned = internTable.get(value);
+
+            if (interned == null && internTable.size() < INTERN_LIMIT) {
+                internTable.put(value, value);
+                interned = value;
+            }
+
+            return interned != null ? interned : value;
+        }
+    }
+
+    /**
+     * An action button. Its mode tells how the action is delivered: to the app
+     * UI, to a headless JS task, or to a registered NotificationActionHandler.
+     */
+    public static class Action {
+        final static String MODE_FOREGROUND = "foreground";
+        final static String MODE_HEADLESS = "headless";
+        final static String MODE_NATIVE = "native";
+
+        public String id;
+        public String title;
+        public String icon;
+        public String mode;
+    }
+
+    /**
+     * Reads and writes the attributes as JSON objects, only the attributes that
+     * are set are written.
+     */
+    static class Adapter extends TypeAdapter<NotificationAttributes> {
+        @Override
+        public void write(JsonWriter out, NotificationAttributes attributes) throws IOException {
+            if (attributes == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            if (attributes.hasId())
+                out.name("id").value(attributes.getId());
+            if (attributes.getSubject() != null)
+                out.name("subject").value(attributes.getSubject());
+            if (attributes.getMessage() != null)
+                out.name("message").value(attributes.getMessage());
+            if (attributes.getAction() != null)
+                out.name("action").value(attributes.getAction());
+            if (attributes.getPayload() != null)
+                out.name("payload").value(attributes.getPayload());
+            if (attributes.hasPayloadByReference())
+                out.name("payloadByReference").value(attributes.isPayloadByReference());
+            if (attributes.getChannelID() != null)
+                out.name("channelID").value(attributes.getChannelID());
+            if (attributes.getChannelName() != null)
+                out.name("channelName").value(attributes.getChannelName());
+            if (attributes.hasDelayed())
+                out.name("delayed").value(attributes.isDelayed());
+            if (attributes.hasDelay())
+                out.name("delay").value(attributes.getDelay());
+            if (attributes.hasScheduled())
+                out.name("scheduled").value(attributes.isScheduled());
+            if (attributes.hasSendAt())
+                out.name("sendAt").value(attributes.getSendAt());
+            if (attributes.hasSendAtYear())
+                out.name("sendAtYear").value(attributes.getSendAtYear());
+            if (attributes.hasSendAtMonth())
+                out.name("sendAtMonth").value(attributes.getSendAtMonth());
+            if (attributes.hasSendAtDay())
+                out.name("sendAtDay").value(attributes.getSendAtDay());
+            if (attributes.hasSendAtWeekDay())
+                out.name("sendAtWeekDay").value(attributes.getSendAtWeekDay());
+            if (attributes.hasSendAtHour())
+                out.name("sendAtHour").value(attributes.getSendAtHour());
+            if (attributes.hasSendAtMinute())
+                out.name("sendAtMinute").value(attributes.getSendAtMinute());
+            if (attributes.getRepeatEvery() != null)
+                out.name("repeatEvery").value(attributes.getRepeatEvery());
+            if (attributes.getRepeatType() != null)
+                out.name("repeatType").value(attributes.getRepeatType());
+            if (attributes.hasRepeatTime())
+                out.name("repeatTime").value(attributes.getRepeatTime());
+            if (attributes.hasRepeatCount())
+                out.name("repeatCount").value(attributes.getRepeatCount());
+            if (attributes.hasEndAt())
+                out.name("endAt").value(attributes.getEndAt());
+            if (attributes.hasTolerance())
+                out.name("tolerance").value(attributes.getTolerance());
+            if (attributes.hasAllowWhileIdle())
+                out.name("allowWhileIdle").value(attributes.isAllowWhileIdle());
+            if (attributes.hasPriority())
+                out.name("priority").value(attributes.getPriority());
+            if (attributes.getSmallIcon() != null)
+                out.name("smallIcon").value(attributes.getSmallIcon());
+            if (attributes.getLargeIcon() != null)
+                out.name("largeIcon").value(attributes.getLargeIcon());
+            if (attributes.getSound() != null)
+                out.name("sound").value(attributes.getSound());
+            if (attributes.getVibrate() != null)
+                out.name("vibrate").value(attributes.getVibrate());
+            if (attributes.getLights() != null)
+                out.name("lights").value(attributes.getLights());
+            if (attributes.hasAutoClear())
+                out.name("autoClear").value(attributes.isAutoClear());
+            if (attributes.hasOnlyAlertOnce())
+                out.name("onlyAlertOnce").value(attributes.isOnlyAlertOnce());
+            if (attributes.getTickerText() != null)
+                out.name("tickerText").value(attributes.getTickerText());
+            if (attributes.hasWhen())
+                out.name("when").value(attributes.getWhen());
+            if (attributes.getBigText() != null)
+                out.name("bigText").value(attributes.getBigText());
+            if (attributes.getBigStyleUrlImage() != null)
+                out.name("bigStyleUrlImage").value(attributes.getBigStyleUrlImage());
+            if (attributes.getBigStyleImageBase64() != null)
+                out.name("bigStyleImageBase64").value(attributes.getBigStyleImageBase64());
+            if (attributes.getSubText() != null)
+                out.name("subText").value(attributes.getSubText());
+            if (attributes.hasProgress())
+                out.name("progress").value(attributes.getProgress());
+            if (attributes.hasLifetime())
+                out.name("lifetime").value(attributes.getLifetime());
+            if (attributes.hasProgressEnd())
+                out.name("progressEnd").value(attributes.getProgressEnd());
+            if (attributes.hasUsesChronometer())
+                out.name("usesChronometer").value(attributes.isUsesChronometer());
+            if (attributes.hasChronometerCountDown())
+                out.name("chronometerCountDown").value(attributes.isChronometerCountDown());
+            if (attributes.hasTimeoutAfter())
+                out.name("timeoutAfter").value(attributes.getTimeoutAfter());
+            if (attributes.getColor() != null)
+                out.name("color").value(attributes.getColor());
+            if (attributes.hasNumber())
+                out.name("number").value(attributes.getNumber());
+            if (attributes.getCategory() != null)
+                out.name("category").value(attributes.getCategory());
+            if (attributes.hasLocalOnly())
+                out.name("localOnly").value(attributes.isLocalOnly());
+            if (attributes.hasInboxStyle())
+                out.name("inboxStyle").value(attributes.isInboxStyle());
+            if (attributes.getInboxStyleBigContentTitle() != null)
+                out.name("inboxStyleBigContentTitle").value(attributes.getInboxStyleBigContentTitle());
+            if (attributes.getInboxStyleSummaryText() != null)
+                out.name("inboxStyleSummaryText").value(attributes.getInboxStyleSummaryText());
+            if (attributes.getInboxStyleLines() != null) {
+                out.name("inboxStyleLines").beginArray();
+                for (String line : attributes.getInboxStyleLines()) {
+                    out.value(line);
+                }
+                out.endArray();
+            }
+            if (attributes.getGroup() != null)
+                out.name("group").value(attributes.getGroup());
+            if (attributes.getActions() != null) {
+                out.name("actions").beginArray();
+                for (Action button : attributes.getActions()) {
+                    out.beginObject();
+                    out.name("id").value(button.id);
+                    out.name("title").value(button.title);
+                    if (button.icon != null)
+                        out.name("icon").value(button.icon);
+                    out.name("mode").value(button.mode);
+                    out.endObject();
+                }
+                out.endArray();
+            }
+            if (attributes.hasGroupSummary())
+                out.name("groupSummary").value(attributes.isGroupSummary());
+            if (attributes.getTemplate() != null)
+                out.name("template").value(attributes.getTemplate());
+            if (attributes.getAttributesHash() != null)
+                out.name("attributesHash").value(attributes.getAttributesHash());
+            if (attributes.getPayloadRef() != null)
+                out.name("payloadRef").value(attributes.getPayloadRef());
+            if (attributes.getBigStyleImageBase64Ref() != null)
+                out.name("bigStyleImageBase64Ref").value(attributes.getBigStyleImageBase64Ref());
+            out.endObject();
+        }
+
+        @Override
+        public NotificationAttributes read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            NotificationAttributes attributes = new NotificationAttributes();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+
+                switch (name) {
+                case "id":
+                    attributes.setId(in.nextInt());
+                    break;
+                case "subject":
+                    attributes.setSubject(in.nextString());
+                    break;
+                case "message":
+                    attributes.setMessage(in.nextString());
+                    break;
+                case "action":
+                    attributes.setAction(in.nextString());
+                    break;
+                case "payload":
+                    attributes.setPayload(in.nextString());
+                    break;
+                case "payloadByReference":
+                    attributes.setPayloadByReference(in.nextBoolean());
+                    break;
+                case "channelID":
+                    attributes.setChannelID(in.nextString());
+                    break;
+                case "channelName":
+                    attributes.setChannelName(in.nextString());
+                    break;
+                case "delayed":
+                    attributes.setDelayed(in.nextBoolean());
+                    break;
+                case "delay":
+                    attributes.setDelay(in.nextInt());
+                    break;
+                case "scheduled":
+                    attributes.setScheduled(in.nextBoolean());
+                    break;
+                case "sendAt":
+                    attributes.setSendAt(in.nextLong());
+                    break;
+                case "sendAtYear":
+                    attributes.setSendAtYear(in.nextInt());
+                    break;
+                case "sendAtMonth":
+                    attributes.setSendAtMonth(in.nextInt());
+                    break;
+                case "sendAtDay":
+                    attributes.setSendAtDay(in.nextInt());
+                    break;
+                case "sendAtWeekDay":
+                    attributes.setSendAtWeekDay(in.nextInt());
+                    break;
+                case "sendAtHour":
+                    attributes.setSendAtHour(in.nextInt());
+                    break;
+                case "sendAtMinute":
+                    attributes.setSendAtMinute(in.nextInt());
+                    break;
+                case "repeatEvery":
+                    attributes.setRepeatEvery(in.nextString());
+                    break;
+                case "repeatType":
+                    attributes.setRepeatType(in.nextString());
+                    break;
+                case "repeatTime":
+                    attributes.setRepeatTime(in.nextInt());
+                    break;
+                case "repeatCount":
+                    attributes.setRepeatCount(in.nextInt());
+                    break;
+                case "endAt":
+                    attributes.setEndAt(in.nextLong());
+                    break;
+                case "tolerance":
+                    attributes.setTolerance(in.nextInt());
+                    break;
+                case "allowWhileIdle":
+                    attributes.setAllowWhileIdle(in.nextBoolean());
+                    break;
+                case "priority":
+                    attributes.setPriority(in.nextInt());
+                    break;
+                case "smallIcon":
+                    attributes.setSmallIcon(in.nextString());
+                    break;
+                case "largeIcon":
+                    attributes.setLargeIcon(in.nextString());
+                    break;
+                case "sound":
+                    attributes.setSound(in.nextString());
+                    break;
+                case "vibrate":
+                    attributes.setVibrate(in.nextString());
+                    break;
+                case "lights":
+                    attributes.setLights(in.nextString());
+                    break;
+                case "autoClear":
+                    attributes.setAutoClear(in.nextBoolean());
+                    break;
+                case "onlyAlertOnce":
+                    attributes.setOnlyAlertOnce(in.nextBoolean());
+                    break;
+                case "tickerText":
+                    attributes.setTickerText(in.nextString());
+                    break;
+                case "when":
+                    attributes.setWhen(in.nextLong());
+                    break;
+                case "bigText":
+                    attributes.setBigText(in.nextString());
+                    break;
+                case "bigStyleUrlImage":
+                    attributes.setBigStyleUrlImage(in.nextString());
+                    break;
+                case "bigStyleImageBase64":
+                    attributes.setBigStyleImageBase64(in.nextString());
+                    break;
+                case "subText":
+                    attributes.setSubText(in.nextString());
+                    break;
+                case "progress":
+                    attributes.setProgress(in.nextInt());
+                    break;
+                case "lifetime":
+                    attributes.setLifetime(in.nextInt());
+                    break;
+                case "progressEnd":
+                    attributes.setProgressEnd(in.nextInt());
+                    break;
+                case "usesChronometer":
+                    attributes.setUsesChronometer(in.nextBoolean());
+                    break;
+                case "chronometerCountDown":
+                    attributes.setChronometerCountDown(in.nextBoolean());
+                    break;
+                case "timeoutAfter":
+                    attributes.setTimeoutAfter(in.nextInt());
+                    break;
+                case "color":
+                    attributes.setColor(in.nextString());
+                    break;
+                case "number":
+                    attributes.setNumber(in.nextInt());
+                    break;
+                case "category":
+                    attributes.setCategory(in.nextString());
+                    break;
+                case "localOnly":
+                    attributes.setLocalOnly(in.nextBoolean());
+                    break;
+                case "inboxStyle":
+                    attributes.setInboxStyle(in.nextBoolean());
+                    break;
+                case "inboxStyleBigContentTitle":
+                    attributes.setInboxStyleBigContentTitle(in.nextString());
+                    break;
+                case "inboxStyleSummaryText":
+                    attributes.setInboxStyleSummaryText(in.nextString());
+                    break;
+                case "inboxStyleLines":
+                    attributes.setInboxStyleLines(readLines(in));
+                    break;
+                case "group":
+                    attributes.setGroup(in.nextString());
+                    break;
+                case "actions":
+                    attributes.setActions(readActions(in));
+                    break;
+                case "groupSummary":
+                    attributes.setGroupSummary(in.nextBoolean());
+                    break;
+                case "template":
+                    attributes.setTemplate(in.nextString());
+                    break;
+                case "attributesHash":
+                    attributes.setAttributesHash(in.nextString());
+                    break;
+                case "payloadRef":
+                    attributes.setPayloadRef(in.nextString());
+                    break;
+                case "bigStyleImageBase64Ref":
+                    attributes.setBigStyleImageBase64Ref(in.nextString());
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+                }
+            }
+            in.endObject();
+
+            return attributes;
+        }
+
+        private static ArrayList<String> readLines(JsonReader in) throws IOException {
+            ArrayList<String> lines = new ArrayList<>();
+
+            in.beginArray();
+            while (in.hasNext()) {
+                lines.add(in.nextString());
+            }
+            in.endArray();
+
+            return lines;
+        }
+
+        private static ArrayList<Action> readActions(JsonReader in) throws IOException {
+            ArrayList<Action> buttons = new ArrayList<>();
+
+            in.beginArray();
+            while (in.hasNext()) {
+                Action button = new Action();
+
+                in.beginObject();
+                while (in.hasNext()) {
+                    String name = in.nextName();
+
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        continue;
+                    }
+
+                    switch (name) {
+                    case "id":
+                        button.id = in.nextString();
+                        break;
+                    case "title":
+                        button.title = in.nextString();
+                        break;
+                    case "icon":
+                        button.icon = in.nextString();
+                        break;
+                    case "mode":
+                        button.mode = in.nextString();
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                    }
+                }
+                in.endObject();
+
+                buttons.add(button);
+            }
+            in.endArray();
+
+            return buttons;
+        }
+    }
 }
@@ -9,25 +9,77 @@ import android.content.Intent;
 import android.content.Context;
 import android.content.BroadcastReceiver;
 
-import java.util.List;
+import com.facebook.react.HeadlessJsTaskService;
 
-import android.util.Log;
+import java.util.List;
 
 /**
  * Handles user's interaction on notifications.
  *
- * Sends broadcast to the application, launches the app if needed.
+ * Sends broadcast to the application, launches the app if needed. Action
+ * buttons in headless or native mode are handled in the background instead.
  */
 public class NotificationEventReceiver extends BroadcastReceiver {
     final static String NOTIFICATION_ID = "id";
     final static String ACTION = "action";
     final static String PAYLOAD = "payload";
+    final static String PAYLOAD_HANDLE = "payloadHandle";
+    final static String AUTO_CLEAR = "autoClear";
+    final static String DISMISSED = "dismissed";
+    final static String EXPIRED = "expired";
+    final static String ACTION_MODE = "actionMode";
 
     public void onReceive(Context context, Intent intent) {
         Bundle extras = intent.getExtras();
 
-        Log.i("ReactSystemNotification", "NotificationEventReceiver: Recived: " + extras.getString(ACTION)
-                + ", Notification ID: " + extras.getInt(NOTIFICATION_ID) + ", payload: " + extras.getString(PAYLOAD));
+        // The user dismissed a notification that has its payload passed by reference,
+        // or belongs to a group
+        if (extras.getBoolean(DISMISSED)) {
+            Trace.record(context, Trace.DISMISSED, extras.getInt(NOTIFICATION_ID));
+            PayloadReferences.detach(context, extras.getInt(NOTIFICATION_ID));
+            RCTNotificationManager.removeFromGroup(context, extras.getInt(NOTIFICATION_ID));
+            NotificationStore.flushAllAsync(goAsync());
+            return;
+        }
+
+        // The lifetime of a notification ended, before Android 8 it is canceled here
+        if (extras.getBoolean(EXPIRED)) {
+            new RCTNotificationManager(context).clear(extras.getInt(NOTIFICATION_ID));
+            NotificationStore.flushAllAsync(goAsync());
+            return;
+        }
+
+        Trace.record(context, Trace.CLICKED, extras.getInt(NOTIFICATION_ID));
+
+        // The clicked notification is gone from the status bar
+        if (extras.getBoolean(AUTO_CLEAR)) {
+            RCTNotificationManager.removeFromGroup(context, extras.getInt(NOTIFICATION_ID));
+        }
+
+        Logger.i("NotificationEventReceiver: Recived: {}, Notification ID: {}, payload: {*}, payload handle: {}",
+                extras.getString(ACTION), extras.getInt(NOTIFICATION_ID), extras.getString(PAYLOAD),
+                extras.getString(PAYLOAD_HANDLE));
+
+        // Action buttons do not clear their notification by themselves. Clearing it
+        // releases the payload, so it is resolved first; the app resolves it again from
+        // the cache of the recently clicked payloads
+        String mode = extras.getString(ACTION_MODE);
+        String payload = mode != null ? resolvePayload(context, extras) : null;
+        if (mode != null && extras.getBoolean(AUTO_CLEAR)) {
+            new RCTNotificationManager(context).clear(extras.getInt(NOTIFICATION_ID));
+        }
+
+        if (NotificationAttributes.Action.MODE_NATIVE.equals(mode) && dispatchToHandler(context, extras, payload)) {
+            NotificationStore.flushAllAsync(goAsync());
+            return;
+        }
+
+        // Run by the task in the foreground as well, its listener is not the press one
+        if (NotificationAttributes.Action.MODE_HEADLESS.equals(mode)) {
+            startHeadlessTask(context, extras, payload);
+            NotificationStore.flushAllAsync(goAsync());
+            return;
+        }
 
         // If the application is not running or is not in foreground, start it with the
         // notification
@@ -39,27 +91,69 @@ public class NotificationEventReceiver extends BroadcastReceiver {
             launchIntent.putExtra("initialSysNotificationId", extras.getInt(NOTIFICATION_ID));
             launchIntent.putExtra("initialSysNotificationAction", extras.getString(ACTION));
             launchIntent.putExtra("initialSysNotificationPayload", extras.getString(PAYLOAD));
+            launchIntent.putExtra("initialSysNotificationPayloadHandle", extras.getString(PAYLOAD_HANDLE));
+            launchIntent.putExtra("initialSysNotificationAutoClear", extras.getBoolean(AUTO_CLEAR));
             launchIntent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
 
             context.startActivity(launchIntent);
-            Log.i("ReactSystemNotification", "NotificationEventReceiver: Launching: " + packageName);
+            Logger.i("NotificationEventReceiver: Launching: {}", packageName);
         } else {
             sendBroadcast(context, extras); // If the application is already running in foreground, send a brodcast too
         }
     }
 
+    /**
+     * Call the native handler registered for the action, returns false if there
+     * is none.
+     */
+    private boolean dispatchToHandler(Context context, Bundle extras, String payload) {
+        NotificationActionHandler handler = NotificationActionHandler.get(extras.getString(ACTION));
+
+        if (handler == null) {
+            Logger.w("NotificationEventReceiver: No Handler For: {}", extras.getString(ACTION));
+            return false;
+        }
+
+        handler.onAction(context, extras.getInt(NOTIFICATION_ID), extras.getString(ACTION), payload);
+        return true;
+    }
+
+    /**
+     * Run the action as a headless JS task, the app UI is not started.
+     */
+    private void startHeadlessTask(Context context, Bundle extras, String payload) {
+        Intent serviceIntent = new Intent(context, NotificationActionService.class);
+
+        serviceIntent.putExtra(NOTIFICATION_ID, extras.getInt(NOTIFICATION_ID));
+        serviceIntent.putExtra(ACTION, extras.getString(ACTION));
+        serviceIntent.putExtra(PAYLOAD, payload);
+
+        HeadlessJsTaskService.acquireWakeLockNow(context);
+        context.startService(serviceIntent);
+
+        Logger.i("NotificationEventReceiver: Headless Task Started: {}", extras.getString(ACTION));
+    }
+
+    private String resolvePayload(Context context, Bundle extras) {
+        if (extras.getString(PAYLOAD) != null) {
+            return extras.getString(PAYLOAD);
+        }
+
+        return PayloadReferences.resolve(context, extras.getInt(NOTIFICATION_ID), extras.getString(PAYLOAD_HANDLE));
+    }
+
     private void sendBroadcast(Context context, Bundle extras) {
         Intent brodcastIntent = new Intent("NotificationEvent");
 
-        brodcastIntent.putExtra("id", extras.getInt(NOTIFICATION_ID));
-        brodcastIntent.putExtra("action", extras.getString(ACTION));
-        brodcastIntent.putExtra("payload", extras.getString(PAYLOAD));
+        brodcastIntent.putExtra(NOTIFICATION_ID, extras.getInt(NOTIFICATION_ID));
+        brodcastIntent.putExtra(ACTION, extras.getString(ACTION));
+        brodcastIntent.putExtra(PAYLOAD, extras.getString(PAYLOAD));
+        brodcastIntent.putExtra(PAYLOAD_HANDLE, extras.getString(PAYLOAD_HANDLE));
+        brodcastIntent.putExtra(AUTO_CLEAR, extras.getBoolean(AUTO_CLEAR));
 
         context.sendBroadcast(brodcastIntent);
-        Log.v("ReactSystemNotification",
-                "NotificationEventReceiver: Broadcast Sent: NotificationEvent: " + extras.getString(ACTION)
-                        + ", Notification ID: " + extras.getInt(NOTIFICATION_ID) + ", payload: "
-                        + extras.getString(PAYLOAD));
+        Logger.v("NotificationEventReceiver: Broadcast Sent: NotificationEvent: {}, Notification ID: {}, payload: {*}",
+                extras.getString(ACTION), extras.getInt(NOTIFICATION_ID), extras.getString(PAYLOAD));
     }
 
     private boolean applicationIsRunning(Context context) {
@@ -71,7 +165,7 @@ public class NotificationEventReceiver extends BroadcastReceiver {
                 if (processInfo.processName.equals(context.getApplicationContext().getPackageName())) {
                     if (processInfo.importance == RunningAppProcessInfo.IMPORTANCE_FOREGROUND) {
                         for (String d : processInfo.pkgList) {
-                            Log.v("ReactSystemNotification", "NotificationEventReceiver: ok: " + d);
+                            Logger.v("NotificationEventReceiver: ok: {}", d);
                             return true;
                         }
                     }
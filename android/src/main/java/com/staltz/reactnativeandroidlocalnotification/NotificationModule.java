@@ -6,6 +6,7 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.BroadcastReceiver;
 import android.app.Activity;
+import android.os.Build;
 
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 import com.facebook.react.bridge.ReactApplicationContext;
@@ -13,6 +14,8 @@ import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Callback;
+import com.facebook.react.bridge.LifecycleEventListener;
+import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.ReadableArray;
@@ -20,7 +23,10 @@ import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableNativeArray;
 
 import java.util.ArrayList;
-import android.util.Log;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 /**
  * The main React native module.
@@ -30,7 +36,13 @@ import android.util.Log;
 public class NotificationModule extends ReactContextBaseJavaModule {
 
     public Context mContext = null;
-    public RCTNotificationManager mNotificationManager = null;
+    public volatile RCTNotificationManager mNotificationManager = null;
+
+    // Released once the stores and indexes are loaded
+    private final CountDownLatch warmUpLatch = new CountDownLatch(1);
+
+    // Runs the commands of JS off the native modules thread
+    private final CommandQueue commandQueue = new CommandQueue();
 
     @Override
     public String getName() {
@@ -44,148 +56,596 @@ public class NotificationModule extends ReactContextBaseJavaModule {
         super(reactContext);
 
         this.mContext = reactContext;
-        this.mNotificationManager = new RCTNotificationManager(reactContext);
 
-        listenNotificationEvent();
+        warmUp();
+
+        // Collect the out-dated records while the app is in background
+        reactContext.addLifecycleEventListener(new LifecycleEventListener() {
+            @Override
+            public void onHostResume() {
+            }
+
+            @Override
+            public void onHostPause() {
+                GarbageCollector.getInstance(mContext).start(false);
+            }
+
+            @Override
+            public void onHostDestroy() {
+            }
+        });
+    }
+
+    /**
+     * Static data, exposed once to JS as constants of the module.
+     */
+    @Override
+    public Map<String, Object> getConstants() {
+        Map<String, Object> constants = new HashMap<>();
+
+        constants.put("applicationName", getApplicationName());
+        constants.put("defaultChannelID", Notification.DEFAULT_CHANNEL_ID);
+        constants.put("defaultChannelName", Notification.DEFAULT_CHANNEL_NAME);
+        constants.put("sdkLevel", Build.VERSION.SDK_INT);
+
+        return constants;
     }
 
     /**
      * React method to create or update a notification.
      */
     @ReactMethod
-    public void rCreate(Integer notificationID, ReadableMap notificationAttributes, Callback errorCallback,
-            Callback successCallback) {
-        try {
-            NotificationAttributes a = getNotificationAttributesFromReadableMap(notificationAttributes);
-            Notification n = mNotificationManager.createOrUpdate(notificationID, a);
+    public void rCreate(String requestID, final int notificationID, final ReadableMap notificationAttributes,
+            Promise promise) {
+        commandQueue.write(requestID, notificationID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                NotificationAttributes a = getNotificationAttributesFromReadableMap(notificationAttributes);
+                return getManager().createOrUpdate(notificationID, a).asReadableMap();
+            }
+        });
+    }
 
-            successCallback.invoke(n.getAttributes().asReadableMap());
+    /**
+     * React method to register a template, the attributes shared by the
+     * notifications created from it.
+     */
+    @ReactMethod
+    public void rRegisterTemplate(String requestID, final String name, final ReadableMap templateAttributes,
+            Promise promise) {
+        commandQueue.writeAll(requestID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                awaitWarmUp();
+                Templates.getInstance(mContext).register(name,
+                        getNotificationAttributesFromReadableMap(templateAttributes));
+                return null;
+            }
+        });
+    }
 
-        } catch (Exception e) {
-            errorCallback.invoke(e.getMessage());
-            Log.e("ReactSystemNotification", "NotificationModule: rCreate Error: " + Log.getStackTraceString(e));
-        }
+    /**
+     * React method to create or update a notification from a template, only
+     * the attributes it overrides are stored.
+     */
+    @ReactMethod
+    public void rCreateFromTemplate(String requestID, final int notificationID, final String name,
+            final ReadableMap overrides, Promise promise) {
+        commandQueue.write(requestID, notificationID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                awaitWarmUp();
+
+                if (!Templates.getInstance(mContext).contains(name)) {
+                    throw new IllegalArgumentException("Unknown template: " + name);
+                }
+
+                NotificationAttributes a = new NotificationAttributes();
+                a.setTemplate(name);
+                a.loadFromReadableMap(overrides);
+                a.setId(notificationID);
+
+                return getManager().createOrUpdate(notificationID, a).asReadableMap();
+            }
+        });
     }
 
     /**
-     * React method to get all notification ids.
+     * React method to make the stored notifications match the given ones, only
+     * the differences are applied.
      */
     @ReactMethod
-    public void rGetIDs(Callback errorCallback, Callback successCallback) {
-        try {
-            ArrayList<Integer> ids = mNotificationManager.getIDs();
-            WritableArray rids = new WritableNativeArray();
+    public void rSync(String requestID, final ReadableArray desired, Promise promise) {
+        commandQueue.writeAll(requestID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                Map<Integer, NotificationAttributes> attributes = new HashMap<>();
+
+                for (int i = 0; i < desired.size(); i++) {
+                    NotificationAttributes a = getNotificationAttributesFromReadableMap(desired.getMap(i));
+                    attributes.put(a.getId(), a);
+                }
 
-            for (Integer id : ids) {
-                rids.pushInt(id);
+                int[] diff = getManager().sync(attributes);
+                WritableMap result = Arguments.createMap();
+
+                result.putInt("added", diff[0]);
+                result.putInt("updated", diff[1]);
+                result.putInt("removed", diff[2]);
+                result.putInt("unchanged", diff[3]);
+
+                return result;
             }
+        });
+    }
 
-            successCallback.invoke((ReadableArray) rids);
+    /**
+     * React method to get all notification ids.
+     */
+    @ReactMethod
+    public void rGetIDs(String requestID, Promise promise) {
+        commandQueue.read(requestID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                ArrayList<Integer> ids = getManager().getIDs();
+                WritableArray rids = new WritableNativeArray();
 
-        } catch (Exception e) {
-            errorCallback.invoke(e.getMessage());
-            Log.e("ReactSystemNotification", "NotificationModule: rGetIDs Error: " + Log.getStackTraceString(e));
-        }
+                for (Integer id : ids) {
+                    rids.pushInt(id);
+                }
+
+                return rids;
+            }
+        });
     }
 
     /**
      * React method to get data of a notification.
      */
     @ReactMethod
-    public void rFind(Integer notificationID, Callback errorCallback, Callback successCallback) {
-        try {
-            Notification n = mNotificationManager.find(notificationID);
-            successCallback.invoke(n.getAttributes().asReadableMap());
+    public void rFind(String requestID, final int notificationID, Promise promise) {
+        commandQueue.read(requestID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                return getManager().find(notificationID).asReadableMap();
+            }
+        });
+    }
 
-        } catch (Exception e) {
-            errorCallback.invoke(e.getMessage());
-            Log.e("ReactSystemNotification", "NotificationModule: rFind Error: " + Log.getStackTraceString(e));
-        }
+    /**
+     * React method to get the upcoming fire times between two dates, sorted.
+     */
+    @ReactMethod
+    public void rGetUpcoming(String requestID, final String from, final String to, final int limit, Promise promise) {
+        commandQueue.read(requestID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                awaitWarmUp();
+                List<long[]> upcoming = FireTimeIndex.getInstance(mContext).getUpcoming(Long.parseLong(from),
+                        Long.parseLong(to), limit);
+                Map<Integer, Notification> notifications = new HashMap<>();
+                WritableArray result = new WritableNativeArray();
+
+                for (long[] fireTime : upcoming) {
+                    int id = (int) fireTime[1];
+                    Notification n = notifications.get(id);
+
+                    if (n == null) {
+                        n = getManager().find(id);
+                        notifications.put(id, n);
+                    }
+
+                    if (n.getAttributes() == null) {
+                        continue;
+                    }
+
+                    WritableMap item = Arguments.createMap();
+                    item.putInt("id", id);
+                    item.putString("fireAt", Long.toString(fireTime[0]));
+                    item.putMap("notification", n.asReadableMap());
+                    result.pushMap(item);
+                }
+
+                return result;
+            }
+        });
     }
 
     /**
      * React method to delete (i.e. cancel a scheduled) notification.
      */
     @ReactMethod
-    public void rDelete(int notificationID, Callback errorCallback, Callback successCallback) {
-        try {
-            Notification n = mNotificationManager.delete(notificationID);
+    public void rDelete(String requestID, final int notificationID, Promise promise) {
+        commandQueue.write(requestID, notificationID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                return getManager().delete(notificationID).asReadableMap();
+            }
+        });
+    }
 
-            successCallback.invoke(n.getAttributes().asReadableMap());
+    /**
+     * React method to delete (i.e. cancel a scheduled) notification.
+     */
+    @ReactMethod
+    public void rDeleteAll(String requestID, Promise promise) {
+        commandQueue.writeAll(requestID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                ArrayList<Integer> ids = getManager().getIDs();
+
+                for (Integer id : ids) {
+                    try {
+                        getManager().delete(id);
+                    } catch (Exception e) {
+                        Logger.e("NotificationModule: rDeleteAll Error: {}", e);
+                    }
+                }
 
-        } catch (Exception e) {
-            errorCallback.invoke(e.getMessage());
-            Log.e("ReactSystemNotification", "NotificationModule: rDelete Error: " + Log.getStackTraceString(e));
-        }
+                return null;
+            }
+        });
     }
 
     /**
-     * React method to delete (i.e. cancel a scheduled) notification.
+     * React method to clear a notification.
      */
     @ReactMethod
-    public void rDeleteAll(Callback errorCallback, Callback successCallback) {
-        try {
-            ArrayList<Integer> ids = mNotificationManager.getIDs();
+    public void rClear(String requestID, final int notificationID, Promise promise) {
+        commandQueue.write(requestID, notificationID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                return getManager().clear(notificationID).asReadableMap();
+            }
+        });
+    }
 
-            for (Integer id : ids) {
-                try {
-                    mNotificationManager.delete(id);
-                } catch (Exception e) {
-                    Log.e("ReactSystemNotification",
-                            "NotificationModule: rDeleteAll Error: " + Log.getStackTraceString(e));
+    /**
+     * React method to clear all notifications of this app.
+     */
+    @ReactMethod
+    public void rClearAll(String requestID, Promise promise) {
+        commandQueue.writeAll(requestID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                getManager().clearAll();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * React method to set how long store mutations are buffered before they are
+     * committed together.
+     */
+    @ReactMethod
+    public void rSetStoreFlushInterval(String requestID, final int milliseconds, Promise promise) {
+        commandQueue.writeAll(requestID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                NotificationStore.setFlushInterval(milliseconds);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * React method to set the lowest level logged, and whether payloads and
+     * records are redacted from the log.
+     */
+    @ReactMethod
+    public void rSetLogLevel(String requestID, final String level, final boolean redact, Promise promise) {
+        commandQueue.writeAll(requestID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                Logger.setLevel(level);
+                Logger.setRedact(redact);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * React method to get the counters of the alarms armed by kind, and of the
+     * wakeups saved by merging tolerant alarms.
+     */
+    @ReactMethod
+    public void rGetAlarmStats(String requestID, Promise promise) {
+        commandQueue.read(requestID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                awaitWarmUp();
+                AlarmBatcher alarmBatcher = new AlarmBatcher(mContext);
+                WritableMap stats = Arguments.createMap();
+
+                stats.putInt("exactAlarms", alarmBatcher.getCount(AlarmBatcher.EXACT_ALARMS));
+                stats.putInt("windowedAlarms", alarmBatcher.getCount(AlarmBatcher.WINDOWED_ALARMS));
+                stats.putInt("inexactRepeatingAlarms", alarmBatcher.getCount(AlarmBatcher.INEXACT_REPEATING_ALARMS));
+                stats.putInt("wakeupsSaved", alarmBatcher.getCount(AlarmBatcher.WAKEUPS_SAVED));
+
+                return stats;
+            }
+        });
+    }
+
+    /**
+     * React method to get how many times each notification was shown, and when
+     * it was last shown.
+     */
+    @ReactMethod
+    public void rGetDeliveryCounts(String requestID, Promise promise) {
+        commandQueue.read(requestID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                WritableArray counts = new WritableNativeArray();
+
+                awaitWarmUp();
+
+                for (long[] counter : FireCounters.getInstance(mContext).getAll()) {
+                    WritableMap count = Arguments.createMap();
+                    count.putInt("id", (int) counter[0]);
+                    count.putInt("fires", (int) counter[1]);
+                    count.putString("lastFiredAt", Long.toString(counter[2]));
+                    counts.pushMap(count);
                 }
+
+                return counts;
+            }
+        });
+    }
+
+    /**
+     * React method to configure the posting queue of immediate notifications.
+     */
+    @ReactMethod
+    public void rSetFloodControl(String requestID, final ReadableMap options, Promise promise) {
+        commandQueue.writeAll(requestID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                double rate = options.hasKey("rate") ? options.getDouble("rate") : PostingQueue.DEFAULT_RATE;
+                int burst = options.hasKey("burst") ? options.getInt("burst") : PostingQueue.DEFAULT_BURST;
+                int maxActive = options.hasKey("maxActive") ? options.getInt("maxActive")
+                        : PostingQueue.DEFAULT_MAX_ACTIVE;
+                boolean priorityOrdering = options.hasKey("priorityOrdering") && options.getBoolean("priorityOrdering");
+
+                PostingQueue.getInstance(mContext).configure(rate, burst, maxActive, priorityOrdering);
+                return null;
             }
+        });
+    }
+
+    /**
+     * React method to get the counters of the posting queue.
+     */
+    @ReactMethod
+    public void rGetPostingStats(String requestID, Promise promise) {
+        commandQueue.read(requestID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                PostingQueue postingQueue = PostingQueue.getInstance(mContext);
+                WritableMap stats = Arguments.createMap();
 
-            successCallback.invoke();
+                stats.putInt("posted", postingQueue.getPosted());
+                stats.putInt("deferred", postingQueue.getDeferred());
+                stats.putInt("dropped", postingQueue.getDropped());
+                stats.putInt("failed", postingQueue.getFailed());
+                stats.putInt("pending", postingQueue.getPending());
 
-        } catch (Exception e) {
-            errorCallback.invoke(e.getMessage());
-            Log.e("ReactSystemNotification", "NotificationModule: rDeleteAll Error: " + Log.getStackTraceString(e));
-        }
+                return stats;
+            }
+        });
     }
 
     /**
-     * React method to clear a notification.
+     * React method to hold the notifications of a category or group, and post
+     * them as one digest.
      */
     @ReactMethod
-    public void rClear(int notificationID, Callback errorCallback, Callback successCallback) {
-        try {
-            Notification n = mNotificationManager.clear(notificationID);
+    public void rSetDigest(String requestID, final String key, final ReadableMap options, Promise promise) {
+        commandQueue.writeAll(requestID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                long window = options.hasKey("window") ? (long) options.getDouble("window") : 0;
+                int quietStart = options.hasKey("quietStart") ? options.getInt("quietStart") : -1;
+                int quietEnd = options.hasKey("quietEnd") ? options.getInt("quietEnd") : -1;
+
+                awaitWarmUp();
+                new Digests(mContext).setRule(key, window, quietStart, quietEnd);
+                return null;
+            }
+        });
+    }
 
-            successCallback.invoke(n.getAttributes().asReadableMap());
+    /**
+     * React method to stop holding the notifications of a category or group,
+     * posts what is held.
+     */
+    @ReactMethod
+    public void rRemoveDigest(String requestID, final String key, Promise promise) {
+        commandQueue.writeAll(requestID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                awaitWarmUp();
+                new Digests(mContext).removeRule(key);
+                return null;
+            }
+        });
+    }
 
-        } catch (Exception e) {
-            errorCallback.invoke(e.getMessage());
-            Log.e("ReactSystemNotification", "NotificationModule: rClear Error: " + Log.getStackTraceString(e));
-        }
+    /**
+     * React method to get the counters of the creates, and of the ones skipped
+     * as the stored notification had the same attributes.
+     */
+    @ReactMethod
+    public void rGetCreateStats(String requestID, Promise promise) {
+        commandQueue.read(requestID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                WritableMap stats = Arguments.createMap();
+
+                stats.putInt("created", RCTNotificationManager.getCreatedCount());
+                stats.putInt("updated", RCTNotificationManager.getUpdatedCount());
+                stats.putInt("skipped", RCTNotificationManager.getSkippedCount());
+
+                return stats;
+            }
+        });
     }
 
     /**
-     * React method to clear all notifications of this app.
+     * React method to start a garbage collection pass now, resolves whether it
+     * started (false if one is running).
      */
     @ReactMethod
-    public void rClearAll(Callback errorCallback, Callback successCallback) {
-        try {
-            mNotificationManager.clearAll();
-            successCallback.invoke();
+    public void rCollectGarbage(String requestID, Promise promise) {
+        commandQueue.read(requestID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                awaitWarmUp();
+                return GarbageCollector.getInstance(mContext).start(true);
+            }
+        });
+    }
 
-        } catch (Exception e) {
-            errorCallback.invoke(e.getMessage());
-            Log.e("ReactSystemNotification", "NotificationModule: rClearAll Error: " + Log.getStackTraceString(e));
-        }
+    /**
+     * React method to get what the last garbage collection pass reclaimed, and
+     * how long it took.
+     */
+    @ReactMethod
+    public void rGetGarbageStats(String requestID, Promise promise) {
+        commandQueue.read(requestID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                GarbageCollector.Stats pass = GarbageCollector.getInstance(mContext).getLastPass();
+                WritableMap stats = Arguments.createMap();
+
+                stats.putString("finishedAt", Long.toString(pass.finishedAt));
+                stats.putInt("scanned", pass.scanned);
+                stats.putInt("reclaimed", pass.getReclaimed());
+                stats.putInt("expired", pass.expired);
+                stats.putInt("orphaned", pass.orphaned);
+                stats.putInt("corrupt", pass.corrupt);
+                stats.putInt("blobs", pass.blobs);
+                stats.putInt("images", pass.images);
+                stats.putInt("slices", pass.slices);
+                stats.putDouble("busyTime", pass.busyTime);
+                stats.putDouble("duration", pass.duration);
+
+                return stats;
+            }
+        });
     }
 
+    /**
+     * React method to get the recorded lifecycle events, oldest first. The
+     * filter may hold an id, a list of event names, a since time and a limit.
+     */
     @ReactMethod
-    public void rGetApplicationName(Callback errorCallback, Callback successCallback) {
-        try {
-            int stringId = getReactApplicationContext().getApplicationInfo().labelRes;
-            successCallback.invoke(getReactApplicationContext().getString(stringId));
+    public void rDumpTrace(String requestID, final ReadableMap filter, Promise promise) {
+        commandQueue.read(requestID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                Integer id = filter.hasKey("id") ? filter.getInt("id") : null;
+                long since = filter.hasKey("since") ? Long.parseLong(filter.getString("since")) : 0;
+                int limit = filter.hasKey("limit") ? filter.getInt("limit") : Integer.MAX_VALUE;
+                int eventMask = 0;
+
+                if (filter.hasKey("events")) {
+                    ReadableArray events = filter.getArray("events");
+
+                    for (int i = 0; i < events.size(); i++) {
+                        int event = Trace.getEvent(events.getString(i));
+
+                        if (event == 0) {
+                            throw new IllegalArgumentException("Unknown trace event: " + events.getString(i));
+                        }
+                        eventMask |= 1 << event;
+                    }
+                }
 
-        } catch (Exception e) {
-            errorCallback.invoke(e.getMessage());
-            Log.e("ReactSystemNotification",
-                    "NotificationModule: rGetApplicationName Error: " + Log.getStackTraceString(e));
-        }
+                Trace.open(mContext);
+                WritableArray result = new WritableNativeArray();
+
+                for (long[] event : Trace.dump(id, eventMask, since, limit)) {
+                    WritableMap item = Arguments.createMap();
+                    item.putString("time", Long.toString(event[0]));
+                    item.putInt("id", (int) event[1]);
+                    item.putString("event", Trace.getEventName((int) event[2]));
+                    result.pushMap(item);
+                }
+
+                return result;
+            }
+        });
+    }
+
+    /**
+     * React method to measure how long reading a notification takes in a
+     * freshly started process, against the number of stored notifications.
+     */
+    @ReactMethod
+    public void rBenchmarkStore(String requestID, final ReadableArray sizes, final int reads, Promise promise) {
+        commandQueue.read(requestID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                int[] storeSizes = new int[sizes.size()];
+                for (int i = 0; i < storeSizes.length; i++) {
+                    storeSizes[i] = sizes.getInt(i);
+                }
+
+                WritableArray result = new WritableNativeArray();
+
+                for (long[] run : StoreBenchmark.run(mContext, storeSizes, reads)) {
+                    WritableMap item = Arguments.createMap();
+                    item.putInt("size", (int) run[0]);
+                    item.putDouble("coldRead", run[1] / 1e6);
+                    item.putDouble("fullLoad", run[2] / 1e6);
+                    result.pushMap(item);
+                }
+
+                return result;
+            }
+        });
+    }
+
+    /**
+     * React method to get the label of the application.
+     */
+    @ReactMethod
+    public void rGetApplicationName(String requestID, Promise promise) {
+        commandQueue.read(requestID, promise, new CommandQueue.Command() {
+            @Override
+            public Object run() {
+                return getApplicationName();
+            }
+        });
+    }
+
+    /**
+     * React method to cancel a command that did not start yet, resolves
+     * whether it was cancelled. Answered at once, queued it could not overtake
+     * the command it cancels.
+     */
+    @ReactMethod
+    public void rCancel(String requestID, String cancelledRequestID, Promise promise) {
+        promise.resolve(commandQueue.cancel(cancelledRequestID));
+    }
+
+    /**
+     * React method to get the depth of the command queue, and its counters.
+     * Answered at once, queued it would count itself.
+     */
+    @ReactMethod
+    public void rGetQueueStats(String requestID, Promise promise) {
+        WritableMap stats = Arguments.createMap();
+
+        stats.putInt("queued", commandQueue.getQueued());
+        stats.putInt("running", commandQueue.getRunning());
+        stats.putInt("completed", commandQueue.getCompleted());
+        stats.putInt("cancelled", commandQueue.getCancelled());
+        stats.putInt("maxQueued", commandQueue.getMaxQueued());
+
+        promise.resolve(stats);
     }
 
     /**
@@ -195,7 +655,7 @@ public class NotificationModule extends ReactContextBaseJavaModule {
         getReactApplicationContext().getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit(eventName,
                 params);
 
-        Log.i("ReactSystemNotification", "NotificationModule: sendEvent (to JS): " + eventName);
+        Logger.d("NotificationModule: sendEvent (to JS): {}", eventName);
     }
 
     @ReactMethod
@@ -212,8 +672,12 @@ public class NotificationModule extends ReactContextBaseJavaModule {
         if (extras != null) {
             Integer initialSysNotificationId = extras.getInt("initialSysNotificationId");
             if (initialSysNotificationId != null) {
-                cb.invoke(initialSysNotificationId, extras.getString("initialSysNotificationAction"),
-                        extras.getString("initialSysNotificationPayload"));
+                String payload = resolvePayload(initialSysNotificationId,
+                        extras.getString("initialSysNotificationPayload"),
+                        extras.getString("initialSysNotificationPayloadHandle"),
+                        extras.getBoolean("initialSysNotificationAutoClear"));
+
+                cb.invoke(initialSysNotificationId, extras.getString("initialSysNotificationAction"), payload);
                 return;
             }
         }
@@ -230,6 +694,8 @@ public class NotificationModule extends ReactContextBaseJavaModule {
         activity.getIntent().removeExtra("initialSysNotificationId");
         activity.getIntent().removeExtra("initialSysNotificationAction");
         activity.getIntent().removeExtra("initialSysNotificationPayload");
+        activity.getIntent().removeExtra("initialSysNotificationPayloadHandle");
+        activity.getIntent().removeExtra("initialSysNotificationAutoClear");
     }
 
     private NotificationAttributes getNotificationAttributesFromReadableMap(ReadableMap readableMap) {
@@ -240,6 +706,84 @@ public class NotificationModule extends ReactContextBaseJavaModule {
         return notificationAttributes;
     }
 
+    private String getApplicationName() {
+        // The label is a literal string when it has no resource
+        return getReactApplicationContext().getApplicationInfo()
+                .loadLabel(getReactApplicationContext().getPackageManager()).toString();
+    }
+
+    /**
+     * Load the stores and indexes and listen to notification events off the
+     * main thread, then start collecting the out-dated records.
+     */
+    private void warmUp() {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mNotificationManager = new RCTNotificationManager(mContext);
+                    FireTimeIndex.getInstance(mContext);
+                    FireCounters.getInstance(mContext);
+                    PostingQueue.getInstance(mContext);
+                    listenNotificationEvent();
+                } catch (Exception e) {
+                    Logger.e("NotificationModule: warmUp Error: {}", e);
+                } finally {
+                    warmUpLatch.countDown();
+                }
+
+                try {
+                    GarbageCollector.getInstance(mContext).start(false);
+                } catch (Exception e) {
+                    Logger.e("NotificationModule: collectGarbage Error: {}", e);
+                }
+            }
+        }, "ReactSystemNotificationWarmUp").start();
+    }
+
+    /**
+     * Wait for the warm-up, for the calls that arrive before it finished.
+     */
+    private void awaitWarmUp() {
+        try {
+            warmUpLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private RCTNotificationManager getManager() {
+        awaitWarmUp();
+
+        // The warm-up failed, load on the first caller thread
+        synchronized (this) {
+            if (mNotificationManager == null) {
+                mNotificationManager = new RCTNotificationManager(mContext);
+            }
+
+            return mNotificationManager;
+        }
+    }
+
+    /**
+     * Get the payload of a clicked notification, resolving it from the store if
+     * it was passed by reference.
+     */
+    private String resolvePayload(int notificationID, String payload, String payloadHandle, boolean autoClear) {
+        if (payload != null || payloadHandle == null) {
+            return payload;
+        }
+
+        payload = PayloadReferences.resolve(mContext, notificationID, payloadHandle);
+
+        // The notification is gone from the status bar, nothing else can use it
+        if (autoClear) {
+            PayloadReferences.detach(mContext, notificationID);
+        }
+
+        return payload;
+    }
+
     private void listenNotificationEvent() {
         IntentFilter intentFilter = new IntentFilter("NotificationEvent");
 
@@ -250,9 +794,13 @@ public class NotificationModule extends ReactContextBaseJavaModule {
                 Bundle extras = intent.getExtras();
 
                 WritableMap params = Arguments.createMap();
-                params.putInt("notificationID", extras.getInt(NotificationEventReceiver.NOTIFICATION_ID));
+                int notificationID = extras.getInt(NotificationEventReceiver.NOTIFICATION_ID);
+                params.putInt("notificationID", notificationID);
                 params.putString("action", extras.getString(NotificationEventReceiver.ACTION));
-                params.putString("payload", extras.getString(NotificationEventReceiver.PAYLOAD));
+                params.putString("payload",
+                        resolvePayload(notificationID, extras.getString(NotificationEventReceiver.PAYLOAD),
+                                extras.getString(NotificationEventReceiver.PAYLOAD_HANDLE),
+                                extras.getBoolean(NotificationEventReceiver.AUTO_CLEAR)));
 
                 sendEvent("sysModuleNotificationClick", params);
             }
@@ -6,7 +6,6 @@ import android.content.Intent;
 
 import java.lang.System;
 import java.util.Calendar;
-import android.util.Log;
 
 /**
  * Publisher for scheduled notifications.
@@ -14,13 +13,21 @@ import android.util.Log;
 public class NotificationPublisher extends BroadcastReceiver {
 
     final static String NOTIFICATION_ID = "notificationId";
+    final static String DIGEST = "digest";
 
     @Override
     public void onReceive(Context context, Intent intent) {
+        // The window of a digest ended
+        if (intent.hasExtra(DIGEST)) {
+            new Digests(context).flush(intent.getStringExtra(DIGEST));
+            NotificationStore.flushAllAsync(goAsync());
+            return;
+        }
+
         int id = intent.getIntExtra(NOTIFICATION_ID, 0);
         long currentTime = System.currentTimeMillis();
-        Log.i("ReactSystemNotification",
-                "NotificationPublisher: Prepare To Publish: " + id + ", Now Time: " + currentTime);
+        Logger.i("NotificationPublisher: Prepare To Publish: {}, Now Time: {}", id, currentTime);
+        Trace.record(context, Trace.FIRED, id);
 
         RCTNotificationManager notificationManager = new RCTNotificationManager(context);
         Notification notification = notificationManager.find(id);
@@ -28,51 +35,88 @@ public class NotificationPublisher extends BroadcastReceiver {
         if (notification.getAttributes() != null) {
 
             // Delete notifications that are out-dated
-            if (notification.getAttributes().endAt != null && notification.getAttributes().endAt < currentTime) {
+            if (notification.getAttributes().hasEndAt() && notification.getAttributes().getEndAt() < currentTime) {
                 notification.cancelAlarm();
                 notification.deleteFromPreferences();
 
                 // Show and delete one-time notifications
-            } else if (notification.getAttributes().repeatType == null) {
-                notification.show();
+            } else if (notification.getAttributes().getRepeatType() == null) {
+                show(context, notification, id);
                 notification.cancelAlarm();
                 notification.deleteFromPreferences();
 
                 // Special conditions for weekly based notifications
-            } else if (notification.getAttributes().repeatType.equals("week")) {
+            } else if (notification.getAttributes().getRepeatType().equals("week")) {
                 Calendar calendar = Calendar.getInstance();
                 int day = calendar.get(Calendar.DAY_OF_WEEK);
                 day = day - 1;
-                if (notification.getAttributes().sendAtWeekDay == day)
-                    notification.show();
+                if (notification.getAttributes().getSendAtWeekDay() == day)
+                    show(context, notification, id);
+                else
+                    Trace.record(context, Trace.SKIPPED, id);
 
                 // Special conditions for monthly based notifications
-            } else if (notification.getAttributes().repeatType.equals("month")) {
+            } else if (notification.getAttributes().getRepeatType().equals("month")) {
                 Calendar calendar = Calendar.getInstance();
                 int day = calendar.get(Calendar.DAY_OF_MONTH);
-                if (notification.getAttributes().sendAtDay == day)
-                    notification.show();
+                if (notification.getAttributes().getSendAtDay() == day)
+                    show(context, notification, id);
+                else
+                    Trace.record(context, Trace.SKIPPED, id);
 
                 // Special conditions for yearly based notifications
-            } else if (notification.getAttributes().repeatType.equals("year")) {
+            } else if (notification.getAttributes().getRepeatType().equals("year")) {
                 Calendar calendar = Calendar.getInstance();
                 int day = calendar.get(Calendar.DAY_OF_MONTH);
-                int month = calendar.get(Calendar.MONTH);
-                if (notification.getAttributes().sendAtDay == day && notification.getAttributes().sendAtMonth == month)
-                    notification.show();
+                int month = calendar.get(Calendar.MONTH) + 1;
+                if (notification.getAttributes().getSendAtDay() == day && notification.getAttributes().getSendAtMonth() == month)
+                    show(context, notification, id);
+                else
+                    Trace.record(context, Trace.SKIPPED, id);
 
                 // Other repeating notifications - just show them
             } else {
-                notification.show();
+                show(context, notification, id);
             }
 
-            if (notification.getAttributes().delayed || !notification.getAttributes().scheduled) {
+            if (notification.getAttributes().isDelayed() || !notification.getAttributes().isScheduled()) {
                 notification.deleteFromPreferences();
             }
 
+            // The next alarm of a wall clock recurrence may fall across a DST change
+            if (notification.isWallClockAnchored()) {
+                notification.rearmIfDrifted(currentTime + 1);
+            }
+
+            // Repeating notifications stay in the index, move them to their next fire time
+            FireTimeIndex.getInstance(context).advance(id);
+
         } else {
             notification.cancelAlarm();
             notification.deleteFromPreferences();
         }
+
+        // The process may be killed once the broadcast is finished
+        NotificationStore.flushAllAsync(goAsync());
+    }
+
+    /**
+     * Show the notification, or hold it for its digest, and count the fire.
+     * Stop repeating it once it fired repeatCount times.
+     */
+    private void show(Context context, Notification notification, int id) {
+        if (!new Digests(context).offer(notification)) {
+            notification.show();
+        }
+
+        int fires = FireCounters.getInstance(context).increment(id, System.currentTimeMillis());
+        int repeatCount = notification.getAttributes().getRepeatCount();
+
+        if (repeatCount > 0 && fires >= repeatCount) {
+            notification.cancelAlarm();
+            notification.deleteFromPreferences();
+
+            Logger.i("NotificationPublisher: Repeat Count Reached: {}, Fires: {}", id, fires);
+        }
     }
 }
@@ -0,0 +1,1171 @@
+package com.staltz.reactnativeandroidlocalnotification;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * A journaled key-value store, safe to share between processes.
+ *
+ * Reads are served from memory. Mutations are applied in memory right away,
+ * appended to a write-ahead journal and group-committed on a dedicated thread
+ * every flush interval. The journal is compacted into a snapshot file in the
+ * background, and replayed on startup if the process died before compacting.
+ *
+ * Processes coordinate with a file lock on a small memory-mapped meta file
+ * holding the snapshot generation and the committed journal length. Readers
+ * compare both with what they have loaded, which costs no system call, and
+ * only read the journal entries appended since. A full reload only happens
+ * after another process compacted the journal.
+ *
+ * A store opens cold: only the journal is read, and single records are looked
+ * up in the snapshot through a memory-mapped index of their offsets written
+ * with it. The receivers of a freshly started process read the one record
+ * they handle without loading the store; getAll() and the other whole-store
+ * reads load it.
+ */
+public class NotificationStore {
+    final static String DIRECTORY_NAME = "ReactNativeSystemNotificationStore";
+
+    private final static long DEFAULT_FLUSH_INTERVAL = 100;
+    private final static long COMPACT_THRESHOLD = 64 * 1024;
+    private final static long FLUSH_TIMEOUT = 5000;
+
+    private final static int META_SIZE = 16;
+    private final static int META_GENERATION = 0;
+    private final static int META_JOURNAL_LENGTH = 8;
+
+    // The index is a header and a slot per snapshot entry, its key hash and
+    // offset, sorted
+    private final static int INDEX_MAGIC = 0x4e534958;
+    private final static int INDEX_HEADER_SIZE = 16;
+    private final static int INDEX_COUNT = 4;
+    private final static int INDEX_GENERATION = 8;
+    private final static int INDEX_SLOT_SIZE = 8;
+
+    private final static byte OP_PUT = 'P';
+    private final static byte OP_REMOVE = 'R';
+    private final static byte OP_CLEAR = 'C';
+
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final static Map<String, NotificationStore> instances = new HashMap<>();
+    private static Handler handler = null;
+    private static volatile long flushInterval = DEFAULT_FLUSH_INTERVAL;
+
+    // While positive, the mutations of the thread are held until its batch ends
+    private final static ThreadLocal<int[]> batchDepth = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    private final String name;
+    private final Context context;
+    private final File snapshotFile;
+    private final File journalFile;
+    private final File metaFile;
+    private final File indexFile;
+
+    // Serializes the file lock holders of this process, always taken before "this"
+    private final Object ioLock = new Object();
+    private FileChannel metaChannel;
+    private MappedByteBuffer meta;
+
+    // State as of the loaded generation and journal length, once loaded
+    private final Map<String, String> committed = new HashMap<>();
+    private volatile boolean loaded = false;
+    private volatile long loadedGeneration = -1;
+    private volatile long loadedJournalLength = 0;
+
+    // Mutations being written, and mutations made since (null values are removals)
+    private Map<String, String> flushing = null;
+    private boolean flushingClear = false;
+    private Map<String, String> overlay = new LinkedHashMap<>();
+    private boolean overlayClear = false;
+    private boolean flushScheduled = false;
+
+    // Incremented whenever the visible content changes
+    private long version = 0;
+
+    // While cold, the mapped index and the journal entries of a generation
+    private MappedByteBuffer index = null;
+    private long indexGeneration = -1;
+    private Mutations journal = null;
+    private long journalGeneration = -1;
+    private long journalLength = 0;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            writePending();
+        }
+    };
+
+    private NotificationStore(Context context, String name) {
+        File directory = new File(context.getFilesDir(), DIRECTORY_NAME);
+
+        this.name = name;
+        this.context = context;
+        this.snapshotFile = new File(directory, name + ".snapshot");
+        this.journalFile = new File(directory, name + ".journal");
+        this.metaFile = new File(directory, name + ".meta");
+        this.indexFile = new File(directory, name + ".index");
+
+        directory.mkdirs();
+        open();
+    }
+
+    /**
+     * Get the store of the given name, loading it if needed.
+     */
+    static NotificationStore getInstance(Context context, String name) {
+        synchronized (instances) {
+            NotificationStore store = instances.get(name);
+
+            if (store == null) {
+                store = new NotificationStore(context.getApplicationContext(), name);
+                instances.put(name, store);
+            }
+
+            return store;
+        }
+    }
+
+    /**
+     * Open a store apart from its shared instance, as a freshly started
+     * process would. It must be closed.
+     */
+    static NotificationStore openUncached(Context context, String name) {
+        return new NotificationStore(context.getApplicationContext(), name);
+    }
+
+    /**
+     * Close a store opened with openUncached(), its pending mutations are
+     * committed.
+     */
+    void close() {
+        flush();
+
+        synchronized (ioLock) {
+            try {
+                if (metaChannel != null) {
+                    metaChannel.close();
+                }
+            } catch (IOException e) {
+                // Ignored
+            }
+
+            metaChannel = null;
+            meta = null;
+            index = null;
+        }
+    }
+
+    /**
+     * Set how long mutations are buffered before they are committed together.
+     */
+    static void setFlushInterval(long milliseconds) {
+        flushInterval = Math.max(0, milliseconds);
+    }
+
+    /**
+     * Commit the pending mutations of all the loaded stores and the trace,
+     * blocks until they are durable. Used before a receiver returns and its
+     * process may be killed.
+     */
+    static void flushAll() {
+        List<NotificationStore> stores;
+
+        synchronized (instances) {
+            stores = new ArrayList<>(instances.values());
+        }
+
+        for (NotificationStore store : stores) {
+            store.flush();
+        }
+
+        Trace.persist();
+    }
+
+    /**
+     * Commit the pending mutations of all the loaded stores and the trace on
+     * the store thread, then finish the broadcast. Used by the receivers, so
+     * the main thread does not wait for the disk.
+     */
+    static void flushAllAsync(final BroadcastReceiver.PendingResult result) {
+        getHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flushAll();
+                } finally {
+                    result.finish();
+                }
+            }
+        });
+    }
+
+    /**
+     * Hold the mutations the calling thread makes to all the stores until
+     * endBatch(), so they are committed as one journal entry per store.
+     * Batches may nest. The mutations of other threads are still committed
+     * on their own schedule, along with the held ones.
+     */
+    static void beginBatch() {
+        batchDepth.get()[0]++;
+    }
+
+    /**
+     * End a batch of the calling thread, commits the mutations held since its
+     * outermost beginBatch().
+     */
+    static void endBatch() {
+        if (--batchDepth.get()[0] == 0) {
+            flushAll();
+        }
+    }
+
+    public String getString(String key) {
+        refresh();
+
+        synchronized (this) {
+            if (loaded || isPending(key)) {
+                return lookup(key);
+            }
+        }
+
+        return readCommitted(key);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = getString(key);
+
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public boolean contains(String key) {
+        return getString(key) != null;
+    }
+
+    public Set<String> keys() {
+        return getAll().keySet();
+    }
+
+    public Map<String, String> getAll() {
+        ensureLoaded();
+
+        synchronized (this) {
+            Map<String, String> all = new HashMap<>();
+
+            if (!overlayClear && !(flushing != null && flushingClear)) {
+                all.putAll(committed);
+            }
+            if (!overlayClear && flushing != null) {
+                merge(all, flushing);
+            }
+            merge(all, overlay);
+
+            return all;
+        }
+    }
+
+    /**
+     * Get a number that changes whenever the content of the store changes, in
+     * this process or another one. Lets callers cache what they derive from it.
+     * It reads the mapped meta file, a cold store is not loaded.
+     */
+    public long getVersion() {
+        MappedByteBuffer meta = this.meta;
+
+        // A compaction resets the journal length, the generation outweighs it
+        long committed = meta != null ? (meta.getLong(META_GENERATION) << 40) + meta.getLong(META_JOURNAL_LENGTH) : 0;
+
+        synchronized (this) {
+            return committed + version;
+        }
+    }
+
+    public synchronized void put(String key, String value) {
+        overlay.put(key, value);
+        version++;
+        scheduleFlush();
+    }
+
+    public synchronized void putInt(String key, int value) {
+        put(key, Integer.toString(value));
+    }
+
+    public synchronized void remove(String key) {
+        overlay.put(key, null);
+        version++;
+        scheduleFlush();
+    }
+
+    public synchronized void clear() {
+        overlay.clear();
+        overlayClear = true;
+        version++;
+        scheduleFlush();
+    }
+
+    /**
+     * Commit the pending mutations, blocks until they are durable.
+     */
+    public void flush() {
+        runOnStoreThread(flushRunnable);
+    }
+
+    /**
+     * Commit the pending mutations and compact the journal now, blocks until it
+     * is done. Removals otherwise stay in the journal until it grows past the
+     * compaction threshold.
+     */
+    public void compactNow() {
+        runOnStoreThread(new Runnable() {
+            @Override
+            public void run() {
+                writePending();
+                compactCommitted();
+            }
+        });
+    }
+
+    private void runOnStoreThread(final Runnable runnable) {
+        Handler storeHandler = getHandler();
+
+        if (Looper.myLooper() == storeHandler.getLooper()) {
+            runnable.run();
+            return;
+        }
+
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        storeHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                runnable.run();
+                latch.countDown();
+            }
+        });
+
+        try {
+            latch.await(FLUSH_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Whether a key has a mutation not committed yet.
+     */
+    private boolean isPending(String key) {
+        return overlay.containsKey(key) || overlayClear
+                || (flushing != null && (flushing.containsKey(key) || flushingClear));
+    }
+
+    private String lookup(String key) {
+        if (overlay.containsKey(key)) {
+            return overlay.get(key);
+        }
+        if (overlayClear) {
+            return null;
+        }
+        if (flushing != null) {
+            if (flushing.containsKey(key)) {
+                return flushing.get(key);
+            }
+            if (flushingClear) {
+                return null;
+            }
+        }
+
+        return committed.get(key);
+    }
+
+    private static void merge(Map<String, String> target, Map<String, String> mutations) {
+        for (Map.Entry<String, String> mutation : mutations.entrySet()) {
+            if (mutation.getValue() == null) {
+                target.remove(mutation.getKey());
+            } else {
+                target.put(mutation.getKey(), mutation.getValue());
+            }
+        }
+    }
+
+    private void scheduleFlush() {
+        if (batchDepth.get()[0] > 0) {
+            return;
+        }
+
+        if (!flushScheduled) {
+            flushScheduled = true;
+            getHandler().postDelayed(flushRunnable, flushInterval);
+        }
+    }
+
+    /**
+     * Catch up with the entries other processes appended to the journal, or
+     * reload everything if the journal was compacted since.
+     */
+    private void refresh() {
+        // Cheap check, reads the mapped meta file without any lock
+        if (!loaded || meta == null || (meta.getLong(META_GENERATION) == loadedGeneration
+                && meta.getLong(META_JOURNAL_LENGTH) == loadedJournalLength)) {
+            return;
+        }
+
+        synchronized (ioLock) {
+            FileLock lock = null;
+
+            try {
+                lock = metaChannel.lock(0, Long.MAX_VALUE, true);
+                catchUp();
+
+            } catch (IOException e) {
+                Logger.e("NotificationStore: refresh Error: {}", e);
+
+            } finally {
+                releaseQuietly(lock);
+            }
+        }
+    }
+
+    /**
+     * Load the whole store if it is cold.
+     */
+    private void ensureLoaded() {
+        if (loaded) {
+            refresh();
+            return;
+        }
+
+        synchronized (ioLock) {
+            FileLock lock = null;
+
+            try {
+                lock = metaChannel.lock(0, Long.MAX_VALUE, true);
+                catchUp();
+
+            } catch (IOException e) {
+                Logger.e("NotificationStore: ensureLoaded Error: {}", e);
+
+            } finally {
+                releaseQuietly(lock);
+            }
+        }
+    }
+
+    /**
+     * Read a committed record of a cold store: the journal entries, or the
+     * snapshot entry the index points to.
+     */
+    private String readCommitted(String key) {
+        synchronized (ioLock) {
+            FileLock lock = null;
+
+            try {
+                lock = metaChannel.lock(0, Long.MAX_VALUE, true);
+
+                if (!loaded) {
+                    long generation = meta.getLong(META_GENERATION);
+
+                    // Compacted by a process that wrote no index, load everything
+                    if (mapIndex(generation)) {
+                        readJournal(generation, meta.getLong(META_JOURNAL_LENGTH));
+
+                        if (journal.containsKey(key)) {
+                            return journal.get(key);
+                        }
+
+                        return journal.cleared ? null : readSnapshotEntry(key);
+                    }
+
+                    catchUp();
+                }
+
+            } catch (IOException e) {
+                Logger.e("NotificationStore: readCommitted Error: {}", e);
+                return null;
+
+            } finally {
+                releaseQuietly(lock);
+            }
+        }
+
+        // Loaded by another thread, or above
+        synchronized (this) {
+            return lookup(key);
+        }
+    }
+
+    /**
+     * Map the index of a snapshot generation, returns false if the index file
+     * is of another generation. The file lock must be held.
+     */
+    private boolean mapIndex(long generation) throws IOException {
+        if (index != null && indexGeneration == generation) {
+            return true;
+        }
+
+        index = null;
+        indexGeneration = -1;
+
+        if (!indexFile.exists() || indexFile.length() < INDEX_HEADER_SIZE) {
+            return false;
+        }
+
+        RandomAccessFile input = new RandomAccessFile(indexFile, "r");
+
+        try {
+            MappedByteBuffer mapped = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+
+            if (mapped.getInt(0) != INDEX_MAGIC || mapped.getLong(INDEX_GENERATION) != generation
+                    || mapped.capacity() < INDEX_HEADER_SIZE + (long) mapped.getInt(INDEX_COUNT) * INDEX_SLOT_SIZE) {
+                return false;
+            }
+
+            index = mapped;
+            indexGeneration = generation;
+            return true;
+
+        } finally {
+            // The mapping stays valid once the file is closed
+            input.close();
+        }
+    }
+
+    /**
+     * Read the journal entries of a generation up to a length, only the ones
+     * appended since the last call if the generation did not change. The file
+     * lock must be held.
+     */
+    private void readJournal(long generation, long length) throws IOException {
+        if (journal == null || journalGeneration != generation || length < journalLength) {
+            journal = new Mutations();
+            journalGeneration = generation;
+            journalLength = 0;
+        }
+
+        if (length > journalLength) {
+            journalLength += readEntries(readFile(journalFile, journalLength, length), journal);
+        }
+    }
+
+    /**
+     * Find the snapshot entry of a key through the mapped index, null if the
+     * snapshot does not hold it. The file lock must be held.
+     */
+    private String readSnapshotEntry(String key) throws IOException {
+        int hash = key.hashCode();
+        int count = index.getInt(INDEX_COUNT);
+
+        // First slot with the hash, several keys may share it
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (getSlotHash(middle) < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        if (low == count || getSlotHash(low) != hash) {
+            return null;
+        }
+
+        RandomAccessFile snapshot = new RandomAccessFile(snapshotFile, "r");
+
+        try {
+            for (int slot = low; slot < count && getSlotHash(slot) == hash; slot++) {
+                snapshot.seek(index.getLong(INDEX_HEADER_SIZE + slot * INDEX_SLOT_SIZE) & 0xffffffffL);
+
+                // RandomAccessFile reads numbers a byte at a time, read the header at once
+                ByteBuffer header = ByteBuffer.allocate(12);
+                snapshot.readFully(header.array());
+                int length = header.getInt();
+                long checksum = header.getLong();
+
+                if (length < 0 || length > snapshot.length() - snapshot.getFilePointer()) {
+                    throw new IOException("Corrupt snapshot entry at slot " + slot);
+                }
+
+                byte[] entry = new byte[length];
+                snapshot.readFully(entry);
+
+                CRC32 crc = new CRC32();
+                crc.update(entry);
+                if (crc.getValue() != checksum) {
+                    throw new IOException("Corrupt snapshot entry at slot " + slot);
+                }
+
+                Map<String, String> decoded = new HashMap<>(1);
+                applyEntry(entry, decoded);
+
+                if (decoded.containsKey(key)) {
+                    return decoded.get(key);
+                }
+            }
+
+        } finally {
+            snapshot.close();
+        }
+
+        return null;
+    }
+
+    private int getSlotHash(int slot) {
+        return (int) (index.getLong(INDEX_HEADER_SIZE + slot * INDEX_SLOT_SIZE) >> 32);
+    }
+
+    /**
+     * Bring the committed state up to date with the files, loads the whole
+     * store if it is cold. The file lock must be held.
+     */
+    private void catchUp() throws IOException {
+        long generation = meta.getLong(META_GENERATION);
+        long journalLength = meta.getLong(META_JOURNAL_LENGTH);
+
+        if (!loaded || generation != loadedGeneration) {
+            Map<String, String> entries = new HashMap<>();
+            readEntries(readFile(snapshotFile, 0, snapshotFile.length()), entries);
+            readEntries(readFile(journalFile, 0, journalLength), entries);
+
+            synchronized (this) {
+                committed.clear();
+                committed.putAll(entries);
+                loadedGeneration = generation;
+                loadedJournalLength = journalLength;
+                version++;
+                loaded = true;
+            }
+
+            // Only read while cold
+            index = null;
+            journal = null;
+
+            Logger.i("NotificationStore: Loaded: {}", name);
+
+        } else if (journalLength > loadedJournalLength) {
+            byte[] tail = readFile(journalFile, loadedJournalLength, journalLength);
+
+            synchronized (this) {
+                readEntries(tail, committed);
+                loadedJournalLength = journalLength;
+                version++;
+            }
+        }
+    }
+
+    /**
+     * Group-commit the pending mutations to the journal. Runs on the store thread.
+     */
+    private void writePending() {
+        if (metaChannel == null) {
+            // The files could not be opened, the store only lives in memory
+            return;
+        }
+
+        synchronized (ioLock) {
+            FileLock lock = null;
+
+            try {
+                lock = metaChannel.lock();
+
+                // A cold store has nothing in memory to catch up
+                if (loaded) {
+                    catchUp();
+                }
+
+                byte[] batch;
+
+                synchronized (this) {
+                    getHandler().removeCallbacks(flushRunnable);
+                    flushScheduled = false;
+
+                    if (overlay.isEmpty() && !overlayClear) {
+                        return;
+                    }
+
+                    flushing = overlay;
+                    flushingClear = overlayClear;
+                    overlay = new LinkedHashMap<>();
+                    overlayClear = false;
+                    batch = encode(flushing, flushingClear);
+                }
+
+                long journalLength = append(batch);
+
+                synchronized (this) {
+                    if (loaded) {
+                        if (flushingClear) {
+                            committed.clear();
+                        }
+                        merge(committed, flushing);
+                        loadedJournalLength = journalLength;
+                    }
+                    flushing = null;
+                    flushingClear = false;
+                }
+
+                if (journalLength >= COMPACT_THRESHOLD) {
+                    // Compaction writes the whole store
+                    catchUp();
+                    compact();
+                }
+
+            } catch (IOException e) {
+                Logger.e("NotificationStore: writePending Error: {}", e);
+
+                // Keep the mutations pending, they will be written with the next batch
+                synchronized (this) {
+                    if (flushing != null && !overlayClear) {
+                        Map<String, String> mutations = new LinkedHashMap<>(flushing);
+                        mutations.putAll(overlay);
+                        overlay = mutations;
+                        overlayClear = flushingClear;
+                    }
+                    flushing = null;
+                    flushingClear = false;
+                    scheduleFlush();
+                }
+
+            } finally {
+                releaseQuietly(lock);
+            }
+        }
+    }
+
+    /**
+     * Append a batch to the journal, returns the new committed journal length.
+     * The exclusive file lock must be held.
+     */
+    private long append(byte[] batch) throws IOException {
+        long journalLength = meta.getLong(META_JOURNAL_LENGTH);
+        RandomAccessFile journal = new RandomAccessFile(journalFile, "rw");
+
+        try {
+            // Drop anything a crashed writer left after the committed length
+            journal.setLength(journalLength);
+            journal.seek(journalLength);
+            journal.write(batch);
+            journal.getFD().sync();
+
+        } finally {
+            journal.close();
+        }
+
+        journalLength += batch.length;
+        meta.putLong(META_JOURNAL_LENGTH, journalLength);
+        meta.force();
+
+        return journalLength;
+    }
+
+    /**
+     * Compact the journal if it holds anything. Runs on the store thread.
+     */
+    private void compactCommitted() {
+        if (metaChannel == null) {
+            return;
+        }
+
+        synchronized (ioLock) {
+            FileLock lock = null;
+
+            try {
+                lock = metaChannel.lock();
+                catchUp();
+
+                if (meta.getLong(META_JOURNAL_LENGTH) > 0) {
+                    compact();
+                }
+
+            } catch (IOException e) {
+                Logger.e("NotificationStore: compactCommitted Error: {}", e);
+
+            } finally {
+                releaseQuietly(lock);
+            }
+        }
+    }
+
+    /**
+     * Write the committed state to a new snapshot with its index and truncate
+     * the journal. The store must be loaded and the exclusive file lock held.
+     */
+    private void compact() throws IOException {
+        long generation = meta.getLong(META_GENERATION) + 1;
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        long[] slots;
+
+        synchronized (this) {
+            slots = new long[committed.size()];
+            int slot = 0;
+
+            for (Map.Entry<String, String> entry : committed.entrySet()) {
+                slots[slot++] = ((long) entry.getKey().hashCode() << 32) | snapshot.size();
+                encodeEntry(snapshot, OP_PUT, entry.getKey(), entry.getValue());
+            }
+        }
+
+        Arrays.sort(slots);
+
+        ByteBuffer indexBuffer = ByteBuffer.allocate(INDEX_HEADER_SIZE + slots.length * INDEX_SLOT_SIZE);
+        indexBuffer.putInt(INDEX_MAGIC).putInt(slots.length).putLong(generation);
+        for (long slot : slots) {
+            indexBuffer.putLong(slot);
+        }
+
+        // The index names the generation it is for, a stale one is never used
+        writeFile(indexFile, indexBuffer.array());
+        writeFile(snapshotFile, snapshot.toByteArray());
+
+        // Bump the generation first so no reader sees the old generation with
+        // an empty journal
+        meta.putLong(META_GENERATION, generation);
+        meta.putLong(META_JOURNAL_LENGTH, 0);
+        meta.force();
+        journalFile.delete();
+
+        synchronized (this) {
+            loadedGeneration = generation;
+            loadedJournalLength = 0;
+        }
+
+        Logger.i("NotificationStore: Compacted: {}", name);
+    }
+
+    /**
+     * Open the meta file and the journal, the snapshot is only read through
+     * its index. Stores without a snapshot or an index are loaded and
+     * compacted once.
+     */
+    private void open() {
+        synchronized (ioLock) {
+            FileLock lock = null;
+
+            try {
+                metaChannel = new RandomAccessFile(metaFile, "rw").getChannel();
+                lock = metaChannel.lock();
+                meta = metaChannel.map(FileChannel.MapMode.READ_WRITE, 0, META_SIZE);
+
+                long generation = meta.getLong(META_GENERATION);
+
+                if (snapshotFile.exists() && mapIndex(generation)) {
+                    readJournal(generation, meta.getLong(META_JOURNAL_LENGTH));
+                    truncateJournal(journalLength);
+
+                    Logger.d("NotificationStore: Opened cold: {}", name);
+                    return;
+                }
+
+                load();
+
+            } catch (IOException e) {
+                Logger.e("NotificationStore: open Error: {}", e);
+
+                // The store only lives in memory
+                synchronized (this) {
+                    loaded = true;
+                }
+
+            } finally {
+                releaseQuietly(lock);
+            }
+        }
+    }
+
+    /**
+     * Load the snapshot, replay the journal over it and compact it. The
+     * exclusive file lock must be held.
+     */
+    private void load() throws IOException {
+        Map<String, String> entries = new HashMap<>();
+
+        if (!snapshotFile.exists()) {
+            // Records used to live in SharedPreferences, import them once
+            SharedPreferences legacy = context.getSharedPreferences(name, Context.MODE_PRIVATE);
+            for (Map.Entry<String, ?> entry : legacy.getAll().entrySet()) {
+                if (entry.getValue() != null) {
+                    entries.put(entry.getKey(), String.valueOf(entry.getValue()));
+                }
+            }
+        } else {
+            readEntries(readFile(snapshotFile, 0, snapshotFile.length()), entries);
+        }
+
+        // Replay the committed entries that are intact
+        byte[] journal = readFile(journalFile, 0, meta.getLong(META_JOURNAL_LENGTH));
+        long journalLength = readEntries(journal, entries);
+        truncateJournal(journalLength);
+
+        synchronized (this) {
+            committed.putAll(entries);
+            loadedGeneration = meta.getLong(META_GENERATION);
+            loadedJournalLength = journalLength;
+            loaded = true;
+        }
+
+        // Writes the index, so the next process opens cold
+        compact();
+    }
+
+    /**
+     * Cut the journal back to its intact committed entries. What a writer that
+     * died before committing appended is dropped, and so is a corrupt tail of
+     * the committed entries. The exclusive file lock must be held.
+     */
+    private void truncateJournal(long intactLength) throws IOException {
+        if (intactLength != meta.getLong(META_JOURNAL_LENGTH)) {
+            Logger.w("NotificationStore: Recovered journal: {}, {} -> {} bytes",
+                    name, meta.getLong(META_JOURNAL_LENGTH), intactLength);
+            meta.putLong(META_JOURNAL_LENGTH, intactLength);
+            meta.force();
+        }
+
+        if (journalFile.length() > intactLength) {
+            Logger.w("NotificationStore: Dropped uncommitted journal bytes: {}, {}", name,
+                    journalFile.length() - intactLength);
+
+            RandomAccessFile output = new RandomAccessFile(journalFile, "rw");
+            try {
+                output.setLength(intactLength);
+            } finally {
+                output.close();
+            }
+        }
+    }
+
+    /**
+     * Apply the entries in a buffer to a map, stops at the first corrupt or
+     * truncated entry. Returns the length of the intact entries.
+     */
+    private long readEntries(byte[] data, Map<String, String> target) {
+        DataInputStream inputStream = new DataInputStream(new java.io.ByteArrayInputStream(data));
+        long position = 0;
+
+        try {
+            while (position < data.length) {
+                int length = inputStream.readInt();
+                long checksum = inputStream.readLong();
+
+                if (length < 0 || length > data.length - position - 12) {
+                    break;
+                }
+
+                byte[] entry = new byte[length];
+                inputStream.readFully(entry);
+
+                CRC32 crc = new CRC32();
+                crc.update(entry);
+                if (crc.getValue() != checksum) {
+                    break;
+                }
+
+                applyEntry(entry, target);
+                position += 12 + length;
+            }
+
+        } catch (IOException e) {
+            // Truncated entry
+        }
+
+        if (position < data.length) {
+            Logger.w("NotificationStore: Dropped corrupt entries: {}", name);
+        }
+
+        return position;
+    }
+
+    private static void applyEntry(byte[] entry, Map<String, String> target) throws IOException {
+        DataInputStream inputStream = new DataInputStream(new java.io.ByteArrayInputStream(entry));
+        byte op = inputStream.readByte();
+        String key = readString(inputStream);
+
+        switch (op) {
+        case OP_PUT:
+            target.put(key, readString(inputStream));
+            break;
+
+        case OP_REMOVE:
+            if (target instanceof Mutations) {
+                target.put(key, null);
+            } else {
+                target.remove(key);
+            }
+            break;
+
+        case OP_CLEAR:
+            target.clear();
+            if (target instanceof Mutations) {
+                ((Mutations) target).cleared = true;
+            }
+            break;
+        }
+    }
+
+    private static byte[] encode(Map<String, String> mutations, boolean clear) {
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+
+        if (clear) {
+            encodeEntry(batch, OP_CLEAR, "", null);
+        }
+
+        for (Map.Entry<String, String> mutation : mutations.entrySet()) {
+            if (mutation.getValue() == null) {
+                encodeEntry(batch, OP_REMOVE, mutation.getKey(), null);
+            } else {
+                encodeEntry(batch, OP_PUT, mutation.getKey(), mutation.getValue());
+            }
+        }
+
+        return batch.toByteArray();
+    }
+
+    private static void encodeEntry(ByteArrayOutputStream batch, byte op, String key, String value) {
+        try {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            DataOutputStream dataStream = new DataOutputStream(data);
+            dataStream.writeByte(op);
+            writeString(dataStream, key);
+            if (value != null) {
+                writeString(dataStream, value);
+            }
+
+            byte[] bytes = data.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+
+            DataOutputStream entryStream = new DataOutputStream(batch);
+            entryStream.writeInt(bytes.length);
+            entryStream.writeLong(crc.getValue());
+            entryStream.write(bytes);
+
+        } catch (IOException e) {
+            // Cannot happen with in-memory streams
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream stream, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        stream.writeInt(bytes.length);
+        stream.write(bytes);
+    }
+
+    private static String readString(DataInputStream stream) throws IOException {
+        byte[] bytes = new byte[stream.readInt()];
+        stream.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Replace a file by writing a temporary one and renaming it.
+     */
+    private static void writeFile(File file, byte[] data) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        RandomAccessFile output = new RandomAccessFile(temporary, "rw");
+
+        try {
+            output.setLength(0);
+            output.write(data);
+            output.getFD().sync();
+        } finally {
+            output.close();
+        }
+
+        if (!temporary.renameTo(file)) {
+            throw new IOException("Cannot rename " + temporary + " to " + file);
+        }
+    }
+
+    private static byte[] readFile(File file, long from, long to) throws IOException {
+        if (!file.exists() || to <= from) {
+            return new byte[0];
+        }
+
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+
+        try {
+            byte[] data = new byte[(int) (Math.min(to, input.length()) - from)];
+            input.seek(from);
+            input.readFully(data);
+            return data;
+
+        } finally {
+            input.close();
+        }
+    }
+
+    private static void releaseQuietly(FileLock lock) {
+        if (lock == null) {
+            return;
+        }
+
+        try {
+            lock.release();
+        } catch (IOException e) {
+            // Ignored
+        }
+    }
+
+    private static synchronized Handler getHandler() {
+        if (handler == null) {
+            HandlerThread thread = new HandlerThread("ReactSystemNotificationStore",
+                    Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+
+        return handler;
+    }
+
+    /**
+     * Mutations read from the journal, null values are removals.
+     */
+    private static class Mutations extends HashMap<String, String> {
+        private final static long serialVersionUID = 1L;
+
+        // Whether the store was cleared before them
+        boolean cleared = false;
+    }
+}
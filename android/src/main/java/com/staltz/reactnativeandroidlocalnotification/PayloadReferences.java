@@ -0,0 +1,102 @@
+package com.staltz.reactnativeandroidlocalnotification;
+
+import android.content.Context;
+import android.util.LruCache;
+
+/**
+ * Payloads passed by reference to the notification intents.
+ *
+ * A notification created with payloadByReference puts its payload in the
+ * BlobStore when it is posted, its intents only carry the notification id and
+ * the handle (hash) of the payload. The posted notification holds a reference
+ * on the blob until it is dismissed, cleared or clicked with autoClear.
+ */
+public class PayloadReferences {
+    final static String PREFERENCES_KEY = "ReactNativeSystemNotificationPayloads";
+    private final static int CACHE_SIZE = 16;
+
+    // Payloads of recently clicked notifications, by notification id
+    private final static LruCache<Integer, String[]> recentlyClicked = new LruCache<>(CACHE_SIZE);
+
+    /**
+     * Attach a payload to a posted notification, returns its handle. Posting it
+     * again with the same payload keeps the reference it holds.
+     */
+    static synchronized String attach(Context context, int notificationID, String payload) {
+        BlobStore blobStore = BlobStore.getInstance(context);
+        NotificationStore store = getStore(context);
+        String key = Integer.toString(notificationID);
+        String previousHandle = store.getString(key);
+
+        if (BlobStore.hash(payload).equals(previousHandle)) {
+            return previousHandle;
+        }
+
+        String handle = blobStore.put(payload);
+
+        store.put(key, handle);
+        blobStore.release(previousHandle);
+
+        return handle;
+    }
+
+    /**
+     * Detach the payload of a notification that is no longer posted.
+     */
+    static synchronized void detach(Context context, int notificationID) {
+        NotificationStore store = getStore(context);
+        String key = Integer.toString(notificationID);
+        String handle = store.getString(key);
+
+        if (handle == null) {
+            return;
+        }
+
+        store.remove(key);
+        BlobStore.getInstance(context).release(handle);
+
+        Logger.i("PayloadReferences: Payload Detached: {}", notificationID);
+    }
+
+    /**
+     * Detach the payloads of all posted notifications.
+     */
+    static synchronized void detachAll(Context context) {
+        NotificationStore store = getStore(context);
+        BlobStore blobStore = BlobStore.getInstance(context);
+
+        for (String handle : store.getAll().values()) {
+            blobStore.release(handle);
+        }
+
+        store.clear();
+    }
+
+    /**
+     * Resolve the payload of a clicked notification from its handle.
+     */
+    static synchronized String resolve(Context context, int notificationID, String handle) {
+        if (handle == null) {
+            return null;
+        }
+
+        String[] cached = recentlyClicked.get(notificationID);
+        if (cached != null && handle.equals(cached[0])) {
+            return cached[1];
+        }
+
+        String payload = BlobStore.getInstance(context).get(handle);
+
+        if (payload != null) {
+            recentlyClicked.put(notificationID, new String[] { handle, payload });
+        } else {
+            Logger.w("PayloadReferences: Payload Not Found: {}", notificationID);
+        }
+
+        return payload;
+    }
+
+    private static NotificationStore getStore(Context context) {
+        return NotificationStore.getInstance(context, PREFERENCES_KEY);
+    }
+}
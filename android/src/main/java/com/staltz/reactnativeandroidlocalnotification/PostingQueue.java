@@ -0,0 +1,518 @@
+package com.staltz.reactnativeandroidlocalnotification;
+
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.service.notification.StatusBarNotification;
+
+import com.google.gson.Gson;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Queue of the notifications posted immediately.
+ *
+ * The system silently drops the posts of an app that exceed its rate, or its
+ * number of active notifications. Posts go through a token bucket instead:
+ * bursts are deferred until tokens are available, and once the maximum number
+ * of active notifications is reached, the overflowing posts are collapsed
+ * into a single summary notification. Updates of the notifications already
+ * shown are never collapsed, they do not add to the active ones.
+ *
+ * Deferred posts are drained on a background thread, as building a
+ * notification may download its images. Notifications are built and posted
+ * outside the lock of the queue. Deferred posts are kept in a store, so the
+ * ones a killed process did not post are posted when it starts again.
+ */
+public class PostingQueue {
+    final static String PREFERENCES_KEY = "ReactNativeSystemNotificationPosting";
+
+    // Tag and id of the summary of the collapsed notifications
+    final static String OVERFLOW_TAG = "overflow";
+    final static int OVERFLOW_ID = 0;
+
+    final static int DEFAULT_RATE = 5;
+    final static int DEFAULT_BURST = 5;
+    final static int DEFAULT_MAX_ACTIVE = 24;
+
+    private final static int SUMMARY_LINES = 5;
+
+    private static PostingQueue instance = null;
+
+    private final Context context;
+    private final NotificationStore store;
+    private final Handler handler;
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    private PriorityQueue<Entry> pending = new PriorityQueue<>(16, comparator(false));
+    private long sequence = 0;
+    private boolean drainScheduled = false;
+
+    private double rate = DEFAULT_RATE;
+    private int burst = DEFAULT_BURST;
+    private int maxActive = DEFAULT_MAX_ACTIVE;
+    private boolean priorityOrdering = false;
+
+    private double tokens = DEFAULT_BURST;
+    private long refilledAt = System.currentTimeMillis();
+
+    private int posted = 0;
+    private int deferred = 0;
+    private int dropped = 0;
+    private int failed = 0;
+
+    // Lines of the overflow summary, the latest last
+    private final ArrayList<String> overflowLines = new ArrayList<>();
+    private int overflowCount = 0;
+
+    private PostingQueue(Context context) {
+        this.context = context;
+        this.store = NotificationStore.getInstance(context, PREFERENCES_KEY);
+
+        HandlerThread thread = new HandlerThread("ReactSystemNotificationPosting",
+                Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+
+        restore();
+    }
+
+    static synchronized PostingQueue getInstance(Context context) {
+        if (instance == null) {
+            instance = new PostingQueue(context.getApplicationContext());
+        }
+
+        return instance;
+    }
+
+    /**
+     * Set the posts allowed per second, the size of a burst, the maximum number
+     * of active notifications, and whether higher priority posts go first.
+     */
+    public synchronized void configure(double rate, int burst, int maxActive, boolean priorityOrdering) {
+        this.rate = rate > 0 ? rate : DEFAULT_RATE;
+        this.burst = burst > 0 ? burst : DEFAULT_BURST;
+        this.maxActive = maxActive > 0 ? maxActive : DEFAULT_MAX_ACTIVE;
+        this.tokens = Math.min(tokens, this.burst);
+
+        if (this.priorityOrdering != priorityOrdering) {
+            this.priorityOrdering = priorityOrdering;
+
+            PriorityQueue<Entry> reordered = new PriorityQueue<>(16, comparator(priorityOrdering));
+            reordered.addAll(pending);
+            pending = reordered;
+        }
+    }
+
+    /**
+     * Post a notification, now if the rate allows it, later otherwise. Throws
+     * what posting it now threw, or a CollapsedException if it was collapsed
+     * into the overflow summary. The failures of deferred posts are counted.
+     */
+    public void post(Notification notification) {
+        Entry entry = new Entry();
+        Batch batch;
+
+        synchronized (this) {
+            // A newer post of the same notification replaces the pending one
+            Iterator<Entry> iterator = pending.iterator();
+            while (iterator.hasNext()) {
+                Entry replaced = iterator.next();
+
+                if (replaced.notification.getId() == notification.getId()) {
+                    iterator.remove();
+                    forget(replaced);
+                    dropped++;
+                }
+            }
+
+            NotificationAttributes attributes = notification.getAttributes();
+
+            entry.notification = notification;
+            entry.priority = attributes.hasPriority() ? attributes.getPriority() : 0;
+            entry.sequence = sequence++;
+            pending.add(entry);
+
+            batch = takeBatch();
+
+            if (pending.contains(entry)) {
+                persist(entry);
+                deferred++;
+                Logger.i("PostingQueue: Post Deferred: {}, Pending: {}", notification.getId(), pending.size());
+            }
+        }
+
+        publish(batch, entry);
+    }
+
+    /**
+     * Forget a pending post of a notification that is deleted or cleared.
+     */
+    public synchronized void remove(int notificationID) {
+        Iterator<Entry> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+
+            if (entry.notification.getId() == notificationID) {
+                iterator.remove();
+                forget(entry);
+            }
+        }
+    }
+
+    /**
+     * Forget all the pending posts.
+     */
+    public synchronized void clear() {
+        pending.clear();
+        store.clear();
+        overflowLines.clear();
+        overflowCount = 0;
+    }
+
+    public synchronized int getPosted() {
+        return posted;
+    }
+
+    public synchronized int getDeferred() {
+        return deferred;
+    }
+
+    public synchronized int getDropped() {
+        return dropped;
+    }
+
+    public synchronized int getFailed() {
+        return failed;
+    }
+
+    public synchronized int getPending() {
+        return pending.size();
+    }
+
+    private void drain() {
+        publish(takeBatch(), null);
+    }
+
+    /**
+     * Take the pending posts the rate and the active notifications allow,
+     * and the overflow summary to post if new ones overflowed.
+     */
+    private synchronized Batch takeBatch() {
+        Batch batch = new Batch();
+
+        drainScheduled = false;
+        refill();
+
+        Set<Integer> shown = null;
+        int active = 0;
+
+        while (!pending.isEmpty()) {
+            if (shown == null) {
+                shown = new HashSet<>();
+                active = getActive(shown);
+            }
+
+            Entry entry = pending.peek();
+            boolean update = shown.contains(entry.notification.getId());
+
+            if (!update && active >= maxActive) {
+                batch.collapsed.add(pending.poll());
+                forget(entry);
+                dropped++;
+                continue;
+            }
+
+            if (tokens < 1) {
+                scheduleDrain();
+                break;
+            }
+
+            batch.entries.add(pending.poll());
+            forget(entry);
+            tokens--;
+
+            if (!update) {
+                shown.add(entry.notification.getId());
+                active++;
+            }
+        }
+
+        if (!batch.collapsed.isEmpty()) {
+            batch.summary = collapse(batch.collapsed);
+        }
+
+        return batch;
+    }
+
+    /**
+     * Post the notifications of a batch, outside the lock. Throws what posting
+     * the caller's entry threw, or that it was collapsed.
+     */
+    private void publish(Batch batch, Entry callerEntry) {
+        RuntimeException callerError = null;
+
+        for (Entry entry : batch.entries) {
+            try {
+                entry.notification.show();
+
+                synchronized (this) {
+                    posted++;
+                }
+
+            } catch (RuntimeException e) {
+                if (entry == callerEntry) {
+                    callerError = e;
+                } else {
+                    synchronized (this) {
+                        failed++;
+                    }
+                }
+
+                Logger.e("PostingQueue: post Error: {}", e);
+            }
+        }
+
+        if (batch.summary != null) {
+            try {
+                batch.summary.show();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    failed++;
+                }
+
+                Logger.e("PostingQueue: collapse Error: {}", e);
+            }
+        }
+
+        if (callerEntry != null && batch.collapsed.contains(callerEntry)) {
+            callerError = new CollapsedException(callerEntry.notification.getId());
+        }
+
+        if (callerError != null) {
+            throw callerError;
+        }
+    }
+
+    /**
+     * Collapse posts into the overflow summary, returns it to post.
+     */
+    private Notification collapse(List<Entry> entries) {
+        if (!isActive(OVERFLOW_TAG, OVERFLOW_ID)) {
+            overflowLines.clear();
+            overflowCount = 0;
+        }
+
+        NotificationAttributes latest = null;
+
+        for (Entry entry : entries) {
+            NotificationAttributes attributes = entry.notification.getAttributes();
+
+            overflowLines.add(attributes.getSubject() != null ? attributes.getSubject() : attributes.getMessage());
+            overflowCount++;
+            latest = attributes;
+        }
+
+        while (overflowLines.size() > SUMMARY_LINES) {
+            overflowLines.remove(0);
+        }
+
+        NotificationAttributes summary = new NotificationAttributes();
+        summary.setId(OVERFLOW_ID);
+        summary.setSubject(overflowCount + " more notifications");
+        summary.setMessage(latest.getSubject() != null ? latest.getSubject() : latest.getMessage());
+        summary.setSmallIcon(latest.getSmallIcon());
+        summary.setChannelID(latest.getChannelID());
+        summary.setChannelName(latest.getChannelName());
+        summary.setColor(latest.getColor());
+        summary.setDelayed(false);
+        summary.setScheduled(false);
+        summary.setAutoClear(true);
+        summary.setOnlyAlertOnce(true);
+        summary.setInboxStyle(true);
+        summary.setInboxStyleSummaryText(summary.getSubject());
+        summary.setInboxStyleLines(new ArrayList<>(overflowLines));
+
+        Logger.i("PostingQueue: Posts Collapsed: {}", overflowCount);
+
+        return new Notification(context, OVERFLOW_ID, summary).setTag(OVERFLOW_TAG);
+    }
+
+    /**
+     * Keep a deferred post in the store, until it is posted or forgotten.
+     */
+    private void persist(Entry entry) {
+        Saved saved = new Saved();
+        saved.sequence = entry.sequence;
+        saved.attributes = entry.notification.getAttributes();
+
+        store.put(Integer.toString(entry.notification.getId()), new Gson().toJson(saved));
+        entry.persisted = true;
+    }
+
+    private void forget(Entry entry) {
+        if (entry.persisted) {
+            store.remove(Integer.toString(entry.notification.getId()));
+            entry.persisted = false;
+        }
+    }
+
+    /**
+     * Queue the deferred posts a previous process did not post.
+     */
+    private synchronized void restore() {
+        List<Entry> entries = new ArrayList<>();
+
+        for (String key : store.keys()) {
+            try {
+                Saved saved = new Gson().fromJson(store.getString(key), Saved.class);
+                int id = Integer.parseInt(key);
+
+                Entry entry = new Entry();
+                entry.notification = new Notification(context, id, saved.attributes);
+                entry.priority = saved.attributes.hasPriority() ? saved.attributes.getPriority() : 0;
+                entry.sequence = saved.sequence;
+                entry.persisted = true;
+                entries.add(entry);
+
+            } catch (Exception e) {
+                Logger.e("PostingQueue: restore Error: {}", key);
+                store.remove(key);
+            }
+        }
+
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        // In the order they were posted, before the posts of this process
+        Collections.sort(entries, comparator(false));
+        for (Entry entry : entries) {
+            entry.sequence = sequence++;
+            pending.add(entry);
+        }
+
+        Logger.i("PostingQueue: Posts Restored: {}", entries.size());
+
+        drainScheduled = true;
+        handler.post(drain);
+    }
+
+    private void refill() {
+        long now = System.currentTimeMillis();
+        tokens = Math.min(burst, tokens + (now - refilledAt) * rate / 1000);
+        refilledAt = now;
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled) {
+            return;
+        }
+
+        drainScheduled = true;
+        handler.postDelayed(drain, (long) Math.ceil((1 - tokens) * 1000 / rate));
+    }
+
+    /**
+     * Count the active notifications, not counting the overflow summary, and
+     * collect the ids the app posted. The system only reports them on Android
+     * 6+, where the limit is enforced.
+     */
+    private int getActive(Set<Integer> shown) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return 0;
+        }
+
+        int active = 0;
+        for (StatusBarNotification notification : getSysNotificationManager().getActiveNotifications()) {
+            if (OVERFLOW_TAG.equals(notification.getTag())) {
+                continue;
+            }
+
+            if (notification.getTag() == null) {
+                shown.add(notification.getId());
+            }
+            active++;
+        }
+
+        return active;
+    }
+
+    private boolean isActive(String tag, int notificationID) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return overflowCount > 0;
+        }
+
+        for (StatusBarNotification notification : getSysNotificationManager().getActiveNotifications()) {
+            if (notification.getId() == notificationID && tag.equals(notification.getTag())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private NotificationManager getSysNotificationManager() {
+        return (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+    }
+
+    private static Comparator<Entry> comparator(final boolean priorityOrdering) {
+        return new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                if (priorityOrdering && a.priority != b.priority) {
+                    return a.priority > b.priority ? -1 : 1;
+                }
+                return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+            }
+        };
+    }
+
+    /**
+     * Thrown to the caller of post() when its notification was collapsed into
+     * the overflow summary, rather than shown.
+     */
+    public static class CollapsedException extends RuntimeException {
+        private final static long serialVersionUID = 1L;
+
+        CollapsedException(int notificationID) {
+            super("Notification collapsed into the overflow summary: " + notificationID);
+        }
+    }
+
+    private static class Entry {
+        Notification notification;
+        int priority;
+        long sequence;
+        boolean persisted = false;
+    }
+
+    private static class Batch {
+        final List<Entry> entries = new ArrayList<>();
+        final List<Entry> collapsed = new ArrayList<>();
+        Notification summary = null;
+    }
+
+    /**
+     * A deferred post, as kept in the store.
+     */
+    static class Saved {
+        long sequence;
+        NotificationAttributes attributes;
+    }
+}
@@ -1,34 +1,66 @@
 package com.staltz.reactnativeandroidlocalnotification;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.app.NotificationManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Html;
+
+import com.google.gson.Gson;
+
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
-
-import android.util.Log;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A high level notification manager
  *
  * Warps the system notification API to make managing direct and scheduled
  * notification easy.
+ *
+ * Notifications with a group are posted as children of the group, the manager
+ * tracks the active members of each group and keeps one summary notification
+ * for it, an inbox of the latest lines with the member count.
  */
 public class RCTNotificationManager {
     final static String PREFERENCES_KEY = "ReactNativeSystemNotification";
+    final static String GROUPS_PREFERENCES_KEY = "ReactNativeSystemNotificationGroups";
+
+    private final static String GROUP_PREFIX = "group:";
+    private final static String MEMBER_PREFIX = "member:";
+
+    // Lines shown in a group summary
+    final static int SUMMARY_LINES = 5;
+
+    // Minimum time between two updates of a group summary
+    final static long SUMMARY_INTERVAL = 1000;
+
+    private final static Object groupsLock = new Object();
+    private final static Map<String, Long> summaryPostedAt = new HashMap<>();
+    private final static Set<String> summaryUpdatesScheduled = new HashSet<>();
+    private static Handler summaryHandler = null;
+
+    // Counters of the creates, and of the ones skipped as nothing changed
+    private final static AtomicInteger createdCount = new AtomicInteger();
+    private final static AtomicInteger updatedCount = new AtomicInteger();
+    private final static AtomicInteger skippedCount = new AtomicInteger();
+
     public Context context = null;
-    public SharedPreferences sharedPreferences = null;
+    public NotificationStore store = null;
 
     /**
      * Constructor.
      */
     public RCTNotificationManager(Context context) {
         this.context = context;
-        this.sharedPreferences = getSharedPreferences(context);
+        this.store = getStore(context);
     }
 
-    static SharedPreferences getSharedPreferences(Context context) {
-        return context.getSharedPreferences(PREFERENCES_KEY, Context.MODE_PRIVATE);
+    static NotificationStore getStore(Context context) {
+        return NotificationStore.getInstance(context, PREFERENCES_KEY);
     }
 
     /**
@@ -38,18 +70,30 @@ public class RCTNotificationManager {
         Notification notification = new Notification(context, notificationID, notificationAttributes);
 
         notification.create();
+        createdCount.incrementAndGet();
 
         return notification;
     }
 
     /**
-     * Create or update (if exists) a notification.
+     * Create or update (if exists) a notification. Does nothing if the stored
+     * notification has the same attributes.
      */
     public Notification createOrUpdate(Integer notificationID, NotificationAttributes notificationAttributes) {
-        if (getIDs().contains(notificationID)) {
+        if (store.contains(Integer.toString(notificationID))) {
             Notification notification = find(notificationID);
+            NotificationAttributes stored = notification.getAttributes();
+
+            // Keep the record, its alarm and the posted notification as they are
+            if (isUnchanged(stored, notificationAttributes)) {
+                skippedCount.incrementAndGet();
+                Logger.i("RCTNotificationManager: Unchanged, Skipped: {}", notificationID);
+
+                return notification;
+            }
 
             notification.update(notificationAttributes);
+            updatedCount.incrementAndGet();
             return notification;
 
         } else {
@@ -58,18 +102,88 @@ public class RCTNotificationManager {
     }
 
     /**
-     * Get all notification ids.
+     * Make the stored notifications match the desired ones: create the missing
+     * ones, update the changed ones and delete the others. The store mutations
+     * are committed together. Returns { added, updated, removed, unchanged }.
+     */
+    public int[] sync(Map<Integer, NotificationAttributes> desired) {
+        int[] diff = new int[4];
+
+        NotificationStore.beginBatch();
+
+        try {
+            Set<Integer> stale = new HashSet<>(getIDs());
+            stale.removeAll(desired.keySet());
+
+            for (Integer notificationID : stale) {
+                delete(notificationID);
+                diff[2]++;
+            }
+
+            for (Map.Entry<Integer, NotificationAttributes> entry : desired.entrySet()) {
+                Integer notificationID = entry.getKey();
+
+                try {
+                    if (!store.contains(Integer.toString(notificationID))) {
+                        diff[0]++;
+                        create(notificationID, entry.getValue());
+
+                    } else if (isUnchanged(find(notificationID).getAttributes(), entry.getValue())) {
+                        skippedCount.incrementAndGet();
+                        diff[3]++;
+
+                    } else {
+                        diff[1]++;
+                        find(notificationID).update(entry.getValue());
+                        updatedCount.incrementAndGet();
+                    }
+
+                } catch (PostingQueue.CollapsedException e) {
+                    // Synced, only its post went into the overflow summary
+                    Logger.w("RCTNotificationManager: sync: {}", e.getMessage());
+                }
+            }
+
+        } finally {
+            NotificationStore.endBatch();
+        }
+
+        Logger.i("RCTNotificationManager: Synced: {} added, {} updated, {} removed, {} unchanged",
+                diff[0], diff[1], diff[2], diff[3]);
+
+        return diff;
+    }
+
+    private static boolean isUnchanged(NotificationAttributes stored, NotificationAttributes attributes) {
+        return stored != null && stored.getAttributesHash() != null
+                && stored.getAttributesHash().equals(Notification.hashAttributes(attributes));
+    }
+
+    public static int getCreatedCount() {
+        return createdCount.get();
+    }
+
+    public static int getUpdatedCount() {
+        return updatedCount.get();
+    }
+
+    public static int getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    /**
+     * Get all notification ids. Out-dated records are purged by the
+     * GarbageCollector.
      */
     public ArrayList<Integer> getIDs() {
-        Set<String> keys = sharedPreferences.getAll().keySet();
+        Set<String> keys = store.keys();
         ArrayList<Integer> ids = new ArrayList<>();
 
         for (String key : keys) {
             try {
                 ids.add(Integer.parseInt(key));
-                // TODO: Delete out-dated notifications BTW
             } catch (Exception e) {
-                Log.e("ReactSystemNotification", "RCTNotificationManager: getIDs Error: " + Log.getStackTraceString(e));
+                Logger.e("RCTNotificationManager: getIDs Error: {}", e);
             }
         }
 
@@ -108,6 +222,245 @@ public class RCTNotificationManager {
     public void clearAll() {
         NotificationManager systemNotificationManager = (NotificationManager) context
                 .getSystemService(Context.NOTIFICATION_SERVICE);
+        PostingQueue.getInstance(context).clear();
         systemNotificationManager.cancelAll();
+        PayloadReferences.detachAll(context);
+
+        synchronized (groupsLock) {
+            getGroupsStore(context).clear();
+        }
+    }
+
+    /**
+     * Add a posted notification to its group, and update the group summary.
+     */
+    static void addToGroup(Context context, int notificationID, NotificationAttributes attributes) {
+        synchronized (groupsLock) {
+            NotificationStore groups = getGroupsStore(context);
+            String previousGroup = groups.getString(MEMBER_PREFIX + notificationID);
+
+            // The notification moved to another group
+            if (previousGroup != null && !previousGroup.equals(attributes.getGroup())) {
+                removeMember(context, groups, notificationID, previousGroup);
+            }
+
+            Group group = loadGroup(groups, attributes.getGroup());
+            if (group == null) {
+                group = new Group();
+            }
+
+            group.remove(notificationID);
+            group.add(notificationID, summaryLine(attributes));
+            group.smallIcon = attributes.getSmallIcon();
+            group.channelID = attributes.getChannelID();
+            group.channelName = attributes.getChannelName();
+            group.color = attributes.getColor();
+
+            groups.put(MEMBER_PREFIX + notificationID, attributes.getGroup());
+            groups.put(GROUP_PREFIX + attributes.getGroup(), new Gson().toJson(group));
+
+            if (group.members.size() > 1 || group.summaryPosted) {
+                scheduleSummary(context, attributes.getGroup());
+            }
+        }
+    }
+
+    /**
+     * Remove a notification that is no longer posted from its group.
+     */
+    static void removeFromGroup(Context context, int notificationID) {
+        synchronized (groupsLock) {
+            NotificationStore groups = getGroupsStore(context);
+            String group = groups.getString(MEMBER_PREFIX + notificationID);
+
+            if (group != null) {
+                removeMember(context, groups, notificationID, group);
+            }
+        }
+    }
+
+    /**
+     * Get the id of the summary notification of a group.
+     */
+    static int getSummaryID(String group) {
+        return group.hashCode() | Integer.MIN_VALUE;
+    }
+
+    /**
+     * Get the tag the summary of a group is posted under, its id does not
+     * collide with the ids of the app or of other summaries.
+     */
+    static String getSummaryTag(String group) {
+        return "group:" + group;
+    }
+
+    private static void removeMember(Context context, NotificationStore groups, int notificationID, String name) {
+        groups.remove(MEMBER_PREFIX + notificationID);
+
+        Group group = loadGroup(groups, name);
+        if (group == null) {
+            return;
+        }
+
+        group.remove(notificationID);
+
+        // Canceling the summary also cancels its children, so it goes with the last one
+        if (group.members.isEmpty()) {
+            groups.remove(GROUP_PREFIX + name);
+            ((NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE))
+                    .cancel(getSummaryTag(name), getSummaryID(name));
+            return;
+        }
+
+        groups.put(GROUP_PREFIX + name, new Gson().toJson(group));
+
+        if (group.summaryPosted) {
+            scheduleSummary(context, name);
+        }
+    }
+
+    /**
+     * Post the summary of a group now, or once SUMMARY_INTERVAL passed since it
+     * was last posted.
+     */
+    private static void scheduleSummary(final Context context, final String name) {
+        Long postedAt = summaryPostedAt.get(name);
+        long wait = postedAt != null ? postedAt + SUMMARY_INTERVAL - System.currentTimeMillis() : 0;
+
+        if (wait <= 0) {
+            postSummary(context, name);
+            return;
+        }
+
+        if (!summaryUpdatesScheduled.add(name)) {
+            return;
+        }
+
+        if (summaryHandler == null) {
+            summaryHandler = new Handler(Looper.getMainLooper());
+        }
+
+        summaryHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (groupsLock) {
+                    summaryUpdatesScheduled.remove(name);
+                    postSummary(context, name);
+                }
+            }
+        }, wait);
+    }
+
+    private static void postSummary(Context context, String name) {
+        NotificationStore groups = getGroupsStore(context);
+        Group group = loadGroup(groups, name);
+
+        if (group == null || group.members.isEmpty()) {
+            return;
+        }
+
+        int count = group.members.size();
+
+        NotificationAttributes summary = new NotificationAttributes();
+        summary.setId(getSummaryID(name));
+        summary.setSubject(count + " notifications");
+        // The content text is plain text, only the inbox lines are HTML
+        summary.setMessage(Html.fromHtml(group.lines.get(group.lines.size() - 1)).toString());
+        summary.setSmallIcon(group.smallIcon);
+        summary.setChannelID(group.channelID);
+        summary.setChannelName(group.channelName);
+        summary.setColor(group.color);
+        summary.setGroup(name);
+        summary.setGroupSummary(true);
+        summary.setNumber(count);
+        summary.setDelayed(false);
+        summary.setScheduled(false);
+        summary.setAutoClear(false);
+        summary.setOnlyAlertOnce(true);
+        summary.setInboxStyle(true);
+        summary.setInboxStyleBigContentTitle(summary.getSubject());
+        summary.setInboxStyleSummaryText(name);
+        summary.setInboxStyleLines(new ArrayList<>(group.lines));
+
+        try {
+            new Notification(context, summary.getId(), summary).setTag(getSummaryTag(name)).show();
+        } catch (Exception e) {
+            Logger.e("RCTNotificationManager: postSummary Error: {}", e);
+            return;
+        }
+
+        summaryPostedAt.put(name, System.currentTimeMillis());
+
+        if (!group.summaryPosted) {
+            group.summaryPosted = true;
+            groups.put(GROUP_PREFIX + name, new Gson().toJson(group));
+        }
+    }
+
+    private static Group loadGroup(NotificationStore groups, String name) {
+        String json = groups.getString(GROUP_PREFIX + name);
+
+        try {
+            return json != null ? new Gson().fromJson(json, Group.class) : null;
+        } catch (Exception e) {
+            Logger.e("RCTNotificationManager: loadGroup Error: {}", name);
+            return null;
+        }
+    }
+
+    /**
+     * Get the inbox line of a member, as HTML with the subject in bold.
+     */
+    private static String summaryLine(NotificationAttributes attributes) {
+        if (attributes.getSubject() == null) {
+            return attributes.getMessage() != null ? Html.escapeHtml(attributes.getMessage()) : "";
+        }
+
+        String subject = Html.escapeHtml(attributes.getSubject());
+
+        return attributes.getMessage() != null ? "<b>" + subject + "</b> " + Html.escapeHtml(attributes.getMessage())
+                : subject;
+    }
+
+    private static NotificationStore getGroupsStore(Context context) {
+        return NotificationStore.getInstance(context, GROUPS_PREFERENCES_KEY);
+    }
+
+    /**
+     * The active members of a group and the latest lines of its summary.
+     */
+    static class Group {
+        ArrayList<Integer> members = new ArrayList<>();
+
+        // The latest SUMMARY_LINES lines and their members, the latest last
+        ArrayList<String> lines = new ArrayList<>();
+        ArrayList<Integer> lineMembers = new ArrayList<>();
+
+        String smallIcon;
+        String channelID;
+        String channelName;
+        String color;
+        boolean summaryPosted;
+
+        void add(int notificationID, String line) {
+            members.add(notificationID);
+            lines.add(line);
+            lineMembers.add(notificationID);
+
+            if (lines.size() > SUMMARY_LINES) {
+                lines.remove(0);
+                lineMembers.remove(0);
+            }
+        }
+
+        void remove(int notificationID) {
+            members.remove(Integer.valueOf(notificationID));
+
+            int index = lineMembers.indexOf(notificationID);
+            if (index >= 0) {
+                lines.remove(index);
+                lineMembers.remove(index);
+            }
+        }
     }
 }
@@ -0,0 +1,250 @@
+package com.staltz.reactnativeandroidlocalnotification;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.net.Uri;
+import android.os.Build;
+import android.text.Html;
+import android.util.Base64;
+import android.util.LruCache;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The parts of a notification that only depend on its attributes, resolved
+ * once.
+ *
+ * A plan holds the resource ids, the color, the sound Uri, the defaults, the
+ * spanned inbox lines and the decoded images, so building the notification
+ * only assembles them. Plans are compiled when a notification is scheduled or
+ * first built, and cached per id in the process while the attributes they
+ * were compiled from are unchanged, so repeating notifications compile once.
+ */
+public class RenderPlan {
+    // Bytes of decoded images the cache holds
+    private final static int CACHE_SIZE = 8 * 1024 * 1024;
+
+    // Charged for a plan besides its images
+    private final static int PLAN_SIZE = 1024;
+
+    private final static LruCache<Integer, RenderPlan> plans = new LruCache<Integer, RenderPlan>(CACHE_SIZE) {
+        @Override
+        protected int sizeOf(Integer notificationID, RenderPlan plan) {
+            return plan.getByteCount();
+        }
+    };
+
+    // Channels created in this process, by id and name
+    private final static Set<String> createdChannels = new HashSet<>();
+
+    final String key;
+    final String channelID;
+    final int smallIcon;
+    final int[] actionIcons;
+    final CharSequence[] inboxLines;
+    final int defaults;
+    final boolean hasColor;
+    final int color;
+    final Uri sound;
+    final Bitmap bigPictureBase64;
+
+    private final String largeIconName;
+    private final URL largeIconURL;
+    private final Bitmap largeIcon;
+    private final int byteCount;
+
+    private RenderPlan(Context context, String key, Notification notification) {
+        NotificationAttributes attributes = notification.getAttributes();
+        Resources resources = context.getResources();
+        String packageName = context.getPackageName();
+
+        this.key = key;
+        this.channelID = attributes.getChannelID() != null ? attributes.getChannelID() : Notification.DEFAULT_CHANNEL_ID;
+        this.smallIcon = resources.getIdentifier(attributes.getSmallIcon(), "mipmap", packageName);
+
+        if (smallIcon == 0) {
+            Logger.w("icon resource not found with name {}",
+                    attributes.getSmallIcon() != null ? attributes.getSmallIcon() : "ic_launcher");
+        }
+
+        List<NotificationAttributes.Action> actions = attributes.getActions();
+        this.actionIcons = new int[actions != null ? actions.size() : 0];
+        for (int i = 0; i < actionIcons.length; i++) {
+            String icon = actions.get(i).icon;
+            actionIcons[i] = icon != null ? resources.getIdentifier(icon, "drawable", packageName) : 0;
+        }
+
+        List<String> lines = attributes.isInboxStyle() ? attributes.getInboxStyleLines() : null;
+        this.inboxLines = new CharSequence[lines != null ? lines.size() : 0];
+        for (int i = 0; i < inboxLines.length; i++) {
+            inboxLines[i] = Html.fromHtml(lines.get(i));
+        }
+
+        int defaults = 0;
+        if ("default".equals(attributes.getSound())) {
+            defaults = defaults | android.app.Notification.DEFAULT_SOUND;
+        }
+        if ("default".equals(attributes.getVibrate())) {
+            defaults = defaults | android.app.Notification.DEFAULT_VIBRATE;
+        }
+        if ("default".equals(attributes.getLights())) {
+            defaults = defaults | android.app.Notification.DEFAULT_LIGHTS;
+        }
+        this.defaults = defaults;
+
+        int color = 0;
+        boolean hasColor = false;
+        if (attributes.getColor() != null) {
+            try {
+                color = Color.parseColor(attributes.getColor());
+                hasColor = true;
+            } catch (IllegalArgumentException e) {
+                Logger.w("RenderPlan: Unknown Color: {}", attributes.getColor());
+            }
+        }
+        this.color = color;
+        this.hasColor = hasColor;
+
+        this.sound = attributes.getSound() != null ? Uri.parse(attributes.getSound()) : null;
+        this.largeIconName = attributes.getLargeIcon();
+
+        // Only decoded when it is the style shown, see Notification.build()
+        Bitmap bigPicture = null;
+        if (attributes.getBigText() == null
+                && (attributes.getBigStyleUrlImage() == null || attributes.getBigStyleUrlImage().equals(""))
+                && notification.getBigStyleImageBase64() != null) {
+            try {
+                Logger.d("start to convert bigStyleImageBase64 to bitmap");
+                byte[] bitmapAsBytes = Base64.decode(notification.getBigStyleImageBase64().getBytes(), Base64.DEFAULT);
+                bigPicture = BitmapFactory.decodeByteArray(bitmapAsBytes, 0, bitmapAsBytes.length);
+                Logger.d("finished to convert bigStyleImageBase64 to bitmap");
+
+            } catch (Exception e) {
+                Logger.e("Error when converting base 64 to Bitmap: {}", e);
+            }
+        }
+        this.bigPictureBase64 = bigPicture;
+
+        // Resource icons never change, downloaded ones are resolved when built
+        URL url = null;
+        Bitmap icon = null;
+        if (largeIconName != null) {
+            try {
+                url = new URL(largeIconName);
+            } catch (MalformedURLException e) {
+                int largeIconId = resources.getIdentifier(largeIconName, "drawable", packageName);
+                icon = BitmapFactory.decodeResource(resources, largeIconId);
+            }
+        }
+        this.largeIconURL = url;
+        this.largeIcon = icon;
+
+        this.byteCount = PLAN_SIZE + (bigPictureBase64 != null ? bigPictureBase64.getByteCount() : 0)
+                + (largeIcon != null ? largeIcon.getByteCount() : 0);
+    }
+
+    /**
+     * Get the plan of a notification, compiled if it is not cached or its
+     * attributes changed.
+     */
+    static RenderPlan get(Context context, Notification notification) {
+        String key = getKey(context, notification);
+        RenderPlan plan = key != null ? plans.get(notification.getId()) : null;
+
+        if (plan == null || !plan.key.equals(key)) {
+            plan = new RenderPlan(context.getApplicationContext(), key, notification);
+
+            // Attributes not saved yet have no hash, they are shown once
+            if (key != null) {
+                plans.put(notification.getId(), plan);
+            }
+
+            Logger.d("RenderPlan: Compiled: {}", notification.getId());
+        }
+
+        return plan;
+    }
+
+    /**
+     * Drop the plan of a deleted notification.
+     */
+    static void remove(int notificationID) {
+        plans.remove(notificationID);
+    }
+
+    /**
+     * Create the channel of the notification, once per process.
+     */
+    void createChannel(Context context, NotificationAttributes attributes) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            return;
+        }
+
+        String channelName = attributes.getChannelName() != null ? attributes.getChannelName()
+                : Notification.DEFAULT_CHANNEL_NAME;
+
+        synchronized (createdChannels) {
+            if (!createdChannels.add(channelID + "\n" + channelName)) {
+                return;
+            }
+        }
+
+        NotificationChannel channel = new NotificationChannel(channelID, channelName,
+                NotificationManager.IMPORTANCE_DEFAULT);
+        ((NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE)).createNotificationChannel(channel);
+    }
+
+    /**
+     * Get the large icon: the resource, the prefetched image, or the image
+     * downloaded now if it was not prefetched.
+     */
+    Bitmap getLargeIcon(Context context) {
+        if (largeIconURL == null) {
+            return largeIcon;
+        }
+
+        Bitmap cached = ImageCache.getInstance(context).get(largeIconName, ImageCache.LARGE_ICON);
+        if (cached != null) {
+            return cached;
+        }
+
+        try {
+            return ImageCache.getInstance(context).download(largeIconName, ImageCache.LARGE_ICON);
+        } catch (Exception e) {
+            Logger.e("RenderPlan: getLargeIcon Error: {}", e);
+        }
+
+        return null;
+    }
+
+    private int getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * The attributes hash of the record, and the templates version when a
+     * template is merged in. Null if the attributes were never saved.
+     */
+    private static String getKey(Context context, Notification notification) {
+        NotificationAttributes attributes = notification.getAttributes();
+
+        if (attributes.getAttributesHash() == null) {
+            return null;
+        }
+
+        if (attributes.getTemplate() == null) {
+            return attributes.getAttributesHash();
+        }
+
+        return attributes.getAttributesHash() + "@" + Templates.getInstance(context).getVersion();
+    }
+}
@@ -0,0 +1,128 @@
+package com.staltz.reactnativeandroidlocalnotification;
+
+import android.content.Context;
+
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures the part of the time from the alarm to the notification shown that
+ * grows with the number of stored notifications: opening the store, reading
+ * the record and parsing its attributes. Building and posting the notification
+ * do not depend on the store and are not measured.
+ *
+ * Each run fills a store of its own with sample records, then opens it as a
+ * freshly started process would and reads one record: cold through the index,
+ * and by loading the whole store as before. The files stay in the page cache,
+ * so it measures the parsing a cold process does, not the disk. Runs are
+ * serialized, they share the files of the store.
+ */
+public class StoreBenchmark {
+    final static String PREFERENCES_KEY = "ReactNativeSystemNotificationBenchmark";
+
+    private final static String SAMPLE = "{\"subject\":\"Daily reminder\",\"message\":\"Time to check in on the "
+            + "progress of the day\",\"action\":\"DEFAULT\",\"payload\":\"{\\\"screen\\\":\\\"progress\\\"}\","
+            + "\"smallIcon\":\"ic_launcher\",\"sound\":\"default\",\"vibrate\":\"default\",\"lights\":\"default\","
+            + "\"tickerText\":\"Daily reminder: Time to check in\",\"priority\":1,\"repeatType\":\"day\","
+            + "\"sendAt\":1700000000000,\"sendAtHour\":9,\"sendAtMinute\":30}";
+
+    /**
+     * Run the benchmark for each store size, reads times each. Returns
+     * { size, median cold read, median full load } per size, in nanoseconds.
+     */
+    static synchronized long[][] run(Context context, int[] sizes, int reads) {
+        if (reads < 1) {
+            throw new IllegalArgumentException("reads must be positive: " + reads);
+        }
+        for (int size : sizes) {
+            if (size < 1) {
+                throw new IllegalArgumentException("Store sizes must be positive: " + size);
+            }
+        }
+
+        Gson gson = new Gson();
+        Random random = new Random();
+        long[][] results = new long[sizes.length][];
+
+        try {
+            for (int i = 0; i < sizes.length; i++) {
+                int size = sizes[i];
+                long[] cold = new long[reads];
+                long[] full = new long[reads];
+
+                fill(context, gson, size);
+
+                for (int read = 0; read < reads; read++) {
+                    String key = Integer.toString(random.nextInt(size));
+
+                    long start = System.nanoTime();
+                    NotificationStore store = NotificationStore.openUncached(context, PREFERENCES_KEY);
+                    gson.fromJson(store.getString(key), NotificationAttributes.class);
+                    cold[read] = System.nanoTime() - start;
+                    store.close();
+
+                    start = System.nanoTime();
+                    store = NotificationStore.openUncached(context, PREFERENCES_KEY);
+                    Map<String, String> all = store.getAll();
+                    gson.fromJson(all.get(key), NotificationAttributes.class);
+                    full[read] = System.nanoTime() - start;
+                    store.close();
+                }
+
+                results[i] = new long[] { size, median(cold), median(full) };
+
+                Logger.i("StoreBenchmark: {} records, cold read: {} us, full load: {} us", size,
+                        results[i][1] / 1000, results[i][2] / 1000);
+            }
+
+        } finally {
+            delete(context);
+        }
+
+        return results;
+    }
+
+    /**
+     * Write size sample records and compact them, so the store holds a
+     * snapshot and its index.
+     */
+    private static void fill(Context context, Gson gson, int size) {
+        delete(context);
+
+        NotificationStore store = NotificationStore.openUncached(context, PREFERENCES_KEY);
+        NotificationAttributes attributes = gson.fromJson(SAMPLE, NotificationAttributes.class);
+
+        for (int id = 0; id < size; id++) {
+            attributes.setId(id);
+            store.put(Integer.toString(id), gson.toJson(attributes));
+        }
+
+        store.compactNow();
+        store.close();
+    }
+
+    private static void delete(Context context) {
+        File[] files = new File(context.getApplicationContext().getFilesDir(), NotificationStore.DIRECTORY_NAME)
+                .listFiles();
+
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.getName().startsWith(PREFERENCES_KEY + ".")) {
+                file.delete();
+            }
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -6,8 +6,6 @@ import android.content.Intent;
 
 import java.util.ArrayList;
 
-import android.util.Log;
-
 /**
  * Set alarms for scheduled notification after system reboot.
  */
@@ -15,7 +13,7 @@ public class SystemBootEventReceiver extends BroadcastReceiver {
 
     @Override
     public void onReceive(Context context, Intent intent) {
-        Log.i("ReactSystemNotification", "SystemBootEventReceiver: Setting system alarms");
+        Logger.i("SystemBootEventReceiver: Setting system alarms");
 
         if (intent.getAction().equals("android.intent.action.BOOT_COMPLETED")) {
             RCTNotificationManager notificationManager = new RCTNotificationManager(context);
@@ -29,13 +27,17 @@ public class SystemBootEventReceiver extends BroadcastReceiver {
                     if (notification.getAttributes() != null) {
                         notification.cancelAlarm();
                         notification.setAlarmAndSaveOrShow();
-                        Log.i("ReactSystemNotification",
-                                "SystemBootEventReceiver: Alarm set for: " + notification.getAttributes().id);
+                        Trace.record(context, Trace.REARMED, id);
+                        Logger.i("SystemBootEventReceiver: Alarm set for: {}", notification.getAttributes().getId());
                     }
                 } catch (Exception e) {
-                    Log.e("ReactSystemNotification", "SystemBootEventReceiver: onReceive Error: " + e.getMessage());
+                    Logger.e("SystemBootEventReceiver: onReceive Error: {}", e.getMessage());
                 }
             }
+
+            new Digests(context).rearm();
+
+            NotificationStore.flushAllAsync(goAsync());
         }
     }
 }
@@ -0,0 +1,123 @@
+package com.staltz.reactnativeandroidlocalnotification;
+
+import android.content.Context;
+
+import com.google.gson.Gson;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A registry of the attributes shared by many notifications.
+ *
+ * A notification created from a template only carries, and only stores, the
+ * attributes it overrides and the name of its template. The template is
+ * merged in when the notification is read, parsed templates are cached until
+ * the registry changes.
+ */
+public class Templates {
+    final static String PREFERENCES_KEY = "ReactNativeSystemNotificationTemplates";
+
+    private static Templates instance = null;
+
+    private final NotificationStore store;
+    private final Map<String, NotificationAttributes> cache = new HashMap<>();
+    private long cachedVersion = -1;
+
+    private Templates(Context context) {
+        this.store = NotificationStore.getInstance(context, PREFERENCES_KEY);
+    }
+
+    static synchronized Templates getInstance(Context context) {
+        if (instance == null) {
+            instance = new Templates(context.getApplicationContext());
+        }
+
+        return instance;
+    }
+
+    /**
+     * Register a template, or replace the one of the same name.
+     */
+    public synchronized void register(String name, NotificationAttributes attributes) {
+        store.put(name, new Gson().toJson(attributes));
+
+        Logger.i("Templates: Template Registered: {}", name);
+    }
+
+    /**
+     * Get the version of the registry, it changes with every template
+     * registered.
+     */
+    public long getVersion() {
+        return store.getVersion();
+    }
+
+    /**
+     * Whether a template is registered.
+     */
+    public boolean contains(String name) {
+        return name != null && store.contains(name);
+    }
+
+    /**
+     * Get the attributes of a template, null if it is not registered.
+     */
+    public synchronized NotificationAttributes get(String name) {
+        long version = store.getVersion();
+
+        // Another process or a register call changed the templates
+        if (version != cachedVersion) {
+            cache.clear();
+            cachedVersion = version;
+        }
+
+        NotificationAttributes template = cache.get(name);
+
+        if (template == null) {
+            String json = store.getString(name);
+
+            try {
+                template = json != null ? new Gson().fromJson(json, NotificationAttributes.class) : null;
+            } catch (Exception e) {
+                Logger.e("Templates: get Error: {}", name);
+            }
+
+            if (template != null) {
+                cache.put(name, template);
+            }
+        }
+
+        return template;
+    }
+
+    /**
+     * Merge the template of a notification with the attributes it overrides.
+     * Returns new attributes, or the given ones if they have no template.
+     */
+    public NotificationAttributes merge(NotificationAttributes overrides) {
+        if (overrides.getTemplate() == null) {
+            return overrides;
+        }
+
+        NotificationAttributes template = get(overrides.getTemplate());
+
+        if (template == null) {
+            Logger.w("Templates: Template Not Found: {}", overrides.getTemplate());
+            return overrides;
+        }
+
+        NotificationAttributes merged = new NotificationAttributes();
+        merged.inherit(overrides);
+        merged.inherit(template);
+
+        // Derived from the merged text, not from the one of the template alone
+        if (merged.getTickerText() == null && merged.getMessage() != null) {
+            String subject = merged.getSubject();
+            merged.setTickerText(subject != null && !subject.isEmpty() ? subject + ": " + merged.getMessage()
+                    : merged.getMessage());
+        }
+
+        return merged;
+    }
+}
@@ -0,0 +1,77 @@
+package com.staltz.reactnativeandroidlocalnotification;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+import java.util.List;
+
+/**
+ * Re-arm the wall clock recurrences after the time zone or the clock changed.
+ *
+ * Alarms are armed at absolute times, so a daily, weekly, monthly or yearly
+ * notification drifts away from its time of the day when the time zone
+ * changes. Only the notifications repeating daily are looked at, and only the
+ * ones whose next alarm moved are re-armed, in a single store batch. Delayed
+ * notifications count elapsed time and are left alone.
+ */
+public class TimeChangeReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+
+        if (!"android.intent.action.TIME_SET".equals(action)
+                && !"android.intent.action.TIMEZONE_CHANGED".equals(action)) {
+            return;
+        }
+
+        Logger.i("TimeChangeReceiver: Time Changed: {}", action);
+
+        // Finding the records and re-arming them reads the disk, keep it off the main thread
+        final Context applicationContext = context.getApplicationContext();
+        final PendingResult result = goAsync();
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    rearmDailyRepeats(applicationContext);
+                    NotificationStore.flushAll();
+                } catch (Exception e) {
+                    Logger.e("TimeChangeReceiver: onReceive Error: {}", e);
+                } finally {
+                    result.finish();
+                }
+            }
+        }, "ReactSystemNotificationTimeChange").start();
+    }
+
+    private void rearmDailyRepeats(Context context) {
+        RCTNotificationManager notificationManager = new RCTNotificationManager(context);
+        List<Integer> ids = FireTimeIndex.getInstance(context).getDailyRepeats();
+        long now = System.currentTimeMillis();
+        int rearmed = 0;
+
+        NotificationStore.beginBatch();
+
+        try {
+            for (Integer id : ids) {
+                try {
+                    Notification notification = notificationManager.find(id);
+
+                    if (notification.getAttributes() != null && notification.isWallClockAnchored()
+                            && notification.rearmIfDrifted(now)) {
+                        rearmed++;
+                    }
+                } catch (Exception e) {
+                    Logger.e("TimeChangeReceiver: onReceive Error: {}", e.getMessage());
+                }
+            }
+        } finally {
+            NotificationStore.endBatch();
+        }
+
+        Logger.i("TimeChangeReceiver: Alarms Re-Armed: {} of {} daily repeats", rearmed, ids.size());
+    }
+}
@@ -0,0 +1,244 @@
+package com.staltz.reactnativeandroidlocalnotification;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A ring buffer of the lifecycle events of the notifications.
+ *
+ * Each event is a time, a notification id and an event type, written in place
+ * in preallocated slots: recording one takes no lock and allocates nothing.
+ * A slot is stamped with the sequence number of its event once written, so
+ * readers skip the slots being overwritten. The events recorded since the last
+ * store flush are appended to a file when the stores are flushed, so the trace
+ * outlives the process; it is reloaded when the process starts tracing.
+ */
+public class Trace {
+    final static String FILE_NAME = "ReactNativeSystemNotificationTrace.log";
+
+    final static int CREATED = 1;
+    final static int UPDATED = 2;
+    final static int ARMED = 3;
+    final static int REARMED = 4;
+    final static int FIRED = 5;
+    final static int SHOWN = 6;
+    final static int SKIPPED = 7;
+    final static int CLICKED = 8;
+    final static int DISMISSED = 9;
+    final static int DELETED = 10;
+
+    private final static String[] EVENT_NAMES = { null, "created", "updated", "armed", "rearmed", "fired", "shown",
+            "skipped", "clicked", "dismissed", "deleted" };
+
+    // Must be a power of two
+    private final static int CAPACITY = 1024;
+    private final static int MASK = CAPACITY - 1;
+
+    private final static int RECORD_SIZE = 16;
+
+    // The file is cut back to the ring once it holds this many events
+    private final static int MAX_FILE_EVENTS = CAPACITY * 4;
+
+    private final static AtomicLong head = new AtomicLong();
+    private final static AtomicLongArray stamps = new AtomicLongArray(CAPACITY);
+    private final static AtomicLongArray times = new AtomicLongArray(CAPACITY);
+    private final static AtomicLongArray events = new AtomicLongArray(CAPACITY);
+
+    private static volatile boolean opened = false;
+    private static volatile FileChannel channel = null;
+    private static volatile long persisted = 0;
+    private static ByteBuffer buffer = null;
+
+    /**
+     * Record an event of a notification.
+     */
+    static void record(Context context, int event, int notificationID) {
+        if (!opened) {
+            open(context);
+        }
+
+        long sequence = head.getAndIncrement();
+        int slot = (int) (sequence & MASK);
+
+        // Readers skip the slot until it is stamped again
+        stamps.set(slot, 0);
+        times.set(slot, System.currentTimeMillis());
+        events.set(slot, ((long) notificationID << 32) | event);
+        stamps.set(slot, sequence + 1);
+    }
+
+    /**
+     * Open the trace file and load the events it holds, once per process.
+     */
+    static synchronized void open(Context context) {
+        if (opened) {
+            return;
+        }
+
+        File directory = new File(context.getApplicationContext().getFilesDir(), NotificationStore.DIRECTORY_NAME);
+        FileLock lock = null;
+
+        try {
+            directory.mkdirs();
+            FileChannel file = new RandomAccessFile(new File(directory, FILE_NAME), "rw").getChannel();
+            buffer = ByteBuffer.allocate(CAPACITY * RECORD_SIZE);
+
+            lock = file.lock();
+            long count = file.size() / RECORD_SIZE;
+            long first = Math.max(0, count - CAPACITY);
+
+            buffer.clear();
+            buffer.limit((int) ((count - first) * RECORD_SIZE));
+            file.read(buffer, first * RECORD_SIZE);
+            buffer.flip();
+
+            while (buffer.remaining() >= RECORD_SIZE) {
+                long time = buffer.getLong();
+                long event = buffer.getLong();
+                long sequence = head.getAndIncrement();
+                int slot = (int) (sequence & MASK);
+
+                stamps.set(slot, 0);
+                times.set(slot, time);
+                events.set(slot, event);
+                stamps.set(slot, sequence + 1);
+            }
+
+            persisted = head.get();
+            channel = file;
+
+        } catch (IOException e) {
+            Logger.e("Trace: open Error: {}", e);
+        } finally {
+            release(lock);
+            opened = true;
+        }
+    }
+
+    /**
+     * Append the events recorded since the last call to the trace file.
+     */
+    static void persist() {
+        if (channel == null || persisted == head.get()) {
+            return;
+        }
+
+        synchronized (Trace.class) {
+            FileLock lock = null;
+
+            try {
+                lock = channel.lock();
+
+                long end = head.get();
+                long from = Math.max(persisted, end - CAPACITY);
+
+                // Cut the file back to the events still in the ring
+                if (channel.size() / RECORD_SIZE + end - from > MAX_FILE_EVENTS) {
+                    channel.truncate(0);
+                    from = Math.max(0, end - CAPACITY);
+                }
+
+                buffer.clear();
+                for (long sequence = from; sequence < end; sequence++) {
+                    int slot = (int) (sequence & MASK);
+                    long stamp = stamps.get(slot);
+                    long time = times.get(slot);
+                    long event = events.get(slot);
+
+                    if (stamp == sequence + 1 && stamps.get(slot) == stamp) {
+                        buffer.putLong(time);
+                        buffer.putLong(event);
+                    }
+                }
+                buffer.flip();
+
+                channel.write(buffer, channel.size());
+                persisted = end;
+
+            } catch (IOException e) {
+                Logger.e("Trace: persist Error: {}", e);
+            } finally {
+                release(lock);
+            }
+        }
+    }
+
+    /**
+     * Get the recorded events, oldest first, as { time, notification id, event }.
+     * Filters on a notification id unless it is null, on the event types in
+     * eventMask (a bit per type, 0 for all) and on the time. Returns the last
+     * limit events matching.
+     */
+    static List<long[]> dump(Integer notificationID, int eventMask, long since, int limit) {
+        long end = head.get();
+        List<long[]> dumped = new ArrayList<>();
+
+        for (long sequence = Math.max(0, end - CAPACITY); sequence < end; sequence++) {
+            int slot = (int) (sequence & MASK);
+            long stamp = stamps.get(slot);
+            long time = times.get(slot);
+            long event = events.get(slot);
+
+            // Being written, or overwritten while it was read
+            if (stamp != sequence + 1 || stamps.get(slot) != stamp) {
+                continue;
+            }
+
+            int id = (int) (event >> 32);
+            int type = (int) event;
+
+            if ((notificationID != null && notificationID != id) || (eventMask != 0 && (eventMask & (1 << type)) == 0)
+                    || time < since) {
+                continue;
+            }
+
+            dumped.add(new long[] { time, id, type });
+        }
+
+        if (dumped.size() > limit) {
+            return dumped.subList(dumped.size() - limit, dumped.size());
+        }
+
+        return dumped;
+    }
+
+    /**
+     * Get the name of an event type, null if it is unknown.
+     */
+    static String getEventName(int event) {
+        return event > 0 && event < EVENT_NAMES.length ? EVENT_NAMES[event] : null;
+    }
+
+    /**
+     * Get an event type by name, 0 if it is unknown.
+     */
+    static int getEvent(String name) {
+        for (int event = 1; event < EVENT_NAMES.length; event++) {
+            if (EVENT_NAMES[event].equals(name)) {
+                return event;
+            }
+        }
+
+        return 0;
+    }
+
+    private static void release(FileLock lock) {
+        if (lock != null) {
+            try {
+                lock.release();
+            } catch (IOException e) {
+                // Ignored
+            }
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.staltz.reactnativeandroidlocalnotification;
+
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Journal replay, torn writes and concurrent writers of the notification
+ * store. Each test opens the store as a freshly started process would.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class NotificationStoreTest {
+    private final static int WRITERS = 4;
+    private final static int WRITES = 200;
+
+    private Context context;
+    private String name;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        name = "NotificationStoreTest" + System.nanoTime();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = getDirectory().listFiles();
+
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.getName().startsWith(name + ".")) {
+                file.delete();
+            }
+        }
+    }
+
+    @Test
+    public void replaysTheJournal() {
+        NotificationStore store = NotificationStore.openUncached(context, name);
+        store.put("1", "one");
+        store.put("2", "two");
+        store.put("3", "three");
+        store.flush();
+        store.remove("2");
+        store.put("3", "THREE");
+        store.close();
+
+        // Not compacted, the mutations are only in the journal
+        assertTrue(getFile(".journal").length() > 0);
+
+        NotificationStore reopened = NotificationStore.openUncached(context, name);
+
+        // Cold, through the journal
+        assertEquals("one", reopened.getString("1"));
+        assertNull(reopened.getString("2"));
+        assertEquals("THREE", reopened.getString("3"));
+
+        // Loaded, the snapshot with the journal replayed over it
+        Map<String, String> all = reopened.getAll();
+        assertEquals(2, all.size());
+        assertEquals("THREE", all.get("3"));
+        reopened.close();
+    }
+
+    @Test
+    public void replaysAClear() {
+        NotificationStore store = NotificationStore.openUncached(context, name);
+        store.put("1", "one");
+        store.flush();
+        store.clear();
+        store.put("2", "two");
+        store.close();
+
+        NotificationStore reopened = NotificationStore.openUncached(context, name);
+        assertNull(reopened.getString("1"));
+        assertEquals("two", reopened.getString("2"));
+        assertEquals(1, reopened.getAll().size());
+        reopened.close();
+    }
+
+    @Test
+    public void replaysOverACompactedSnapshot() {
+        NotificationStore store = NotificationStore.openUncached(context, name);
+        store.put("1", "one");
+        store.put("2", "two");
+        store.compactNow();
+        store.put("2", "TWO");
+        store.close();
+
+        NotificationStore reopened = NotificationStore.openUncached(context, name);
+
+        // From the snapshot through the index, and from the journal
+        assertEquals("one", reopened.getString("1"));
+        assertEquals("TWO", reopened.getString("2"));
+        reopened.close();
+    }
+
+    @Test
+    public void dropsATornTail() throws IOException {
+        NotificationStore store = NotificationStore.openUncached(context, name);
+        store.put("1", "one");
+        store.flush();
+        store.put("2", "two");
+        store.close();
+
+        // A writer died in the middle of its next entry
+        long committed = getFile(".journal").length();
+        append(getFile(".journal"), new byte[] { 0, 0, 0, 64, 1, 2, 3, 4, 5 });
+
+        NotificationStore reopened = NotificationStore.openUncached(context, name);
+        assertEquals("one", reopened.getString("1"));
+        assertEquals("two", reopened.getString("2"));
+
+        // Appended after the committed entries, the torn bytes are overwritten
+        reopened.put("3", "three");
+        reopened.close();
+
+        NotificationStore recovered = NotificationStore.openUncached(context, name);
+        assertEquals("three", recovered.getString("3"));
+        assertEquals(3, recovered.getAll().size());
+        recovered.close();
+
+        assertTrue(getFile(".journal").length() > committed);
+    }
+
+    @Test
+    public void dropsUncommittedEntries() throws IOException {
+        NotificationStore store = NotificationStore.openUncached(context, name);
+        store.put("1", "one");
+        store.close();
+        long committed = getFile(".journal").length();
+
+        store = NotificationStore.openUncached(context, name);
+        store.put("2", "two");
+        store.close();
+
+        // The writer of "2" died after appending it, before committing its length
+        RandomAccessFile meta = new RandomAccessFile(getFile(".meta"), "rw");
+        try {
+            meta.seek(8);
+            meta.writeLong(committed);
+        } finally {
+            meta.close();
+        }
+
+        NotificationStore reopened = NotificationStore.openUncached(context, name);
+        assertEquals("one", reopened.getString("1"));
+        assertNull(reopened.getString("2"));
+        reopened.close();
+
+        assertEquals(committed, getFile(".journal").length());
+    }
+
+    @Test
+    public void dropsACorruptEntry() throws IOException {
+        NotificationStore store = NotificationStore.openUncached(context, name);
+        store.put("1", "one");
+        store.flush();
+        store.put("2", "two");
+        store.close();
+
+        // Flip the last byte of the last entry, its checksum no longer matches
+        RandomAccessFile journal = new RandomAccessFile(getFile(".journal"), "rw");
+        try {
+            journal.seek(journal.length() - 1);
+            int last = journal.read();
+            journal.seek(journal.length() - 1);
+            journal.write(last ^ 0xff);
+        } finally {
+            journal.close();
+        }
+
+        NotificationStore reopened = NotificationStore.openUncached(context, name);
+        assertEquals("one", reopened.getString("1"));
+        assertNull(reopened.getString("2"));
+        reopened.put("3", "three");
+        reopened.close();
+
+        NotificationStore recovered = NotificationStore.openUncached(context, name);
+        assertEquals("one", recovered.getString("1"));
+        assertNull(recovered.getString("2"));
+        assertEquals("three", recovered.getString("3"));
+        recovered.close();
+    }
+
+    @Test
+    public void changesVersionWithoutLoading() {
+        NotificationStore store = NotificationStore.openUncached(context, name);
+        store.put("1", "one");
+        store.close();
+
+        NotificationStore reopened = NotificationStore.openUncached(context, name);
+        long version = reopened.getVersion();
+        assertEquals(version, reopened.getVersion());
+
+        reopened.put("2", "two");
+        assertTrue(reopened.getVersion() != version);
+
+        version = reopened.getVersion();
+        reopened.compactNow();
+        assertTrue(reopened.getVersion() != version);
+        reopened.close();
+    }
+
+    @Test
+    public void commitsConcurrentWriters() throws InterruptedException {
+        final NotificationStore store = NotificationStore.openUncached(context, name);
+        Thread[] writers = new Thread[WRITERS];
+
+        for (int i = 0; i < WRITERS; i++) {
+            final int writer = i;
+
+            writers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    // One of the writers holds its mutations in batches
+                    for (int write = 0; write < WRITES; write++) {
+                        if (writer == 0 && write % 50 == 0) {
+                            NotificationStore.beginBatch();
+                        }
+
+                        store.put(writer + ":" + write, Integer.toString(write));
+
+                        if (writer == 0 && write % 50 == 49) {
+                            NotificationStore.endBatch();
+                            store.flush();
+                        } else if (write % 50 == 0) {
+                            store.flush();
+                        }
+                    }
+                }
+            });
+            writers[i].start();
+        }
+
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        store.close();
+
+        NotificationStore reopened = NotificationStore.openUncached(context, name);
+        Map<String, String> all = reopened.getAll();
+        assertEquals(WRITERS * WRITES, all.size());
+
+        for (int writer = 0; writer < WRITERS; writer++) {
+            for (int write = 0; write < WRITES; write++) {
+                assertEquals(Integer.toString(write), all.get(writer + ":" + write));
+            }
+        }
+        reopened.close();
+    }
+
+    @Test
+    public void batchesOnlyHoldTheirThread() throws InterruptedException {
+        final NotificationStore store = NotificationStore.openUncached(context, name);
+        long opened = getFile(".journal").length();
+
+        NotificationStore.beginBatch();
+
+        try {
+            store.put("held", "1");
+
+            Thread other = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    store.put("other", "2");
+                }
+            });
+            other.start();
+            other.join();
+
+            // The mutation of the other thread is committed on its own schedule
+            long deadline = System.currentTimeMillis() + 5000;
+            while (getFile(".journal").length() == opened && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertTrue(getFile(".journal").length() > opened);
+
+        } finally {
+            NotificationStore.endBatch();
+        }
+
+        store.close();
+
+        NotificationStore reopened = NotificationStore.openUncached(context, name);
+        assertEquals("1", reopened.getString("held"));
+        assertEquals("2", reopened.getString("other"));
+        reopened.close();
+    }
+
+    private File getDirectory() {
+        return new File(context.getFilesDir(), NotificationStore.DIRECTORY_NAME);
+    }
+
+    private File getFile(String extension) {
+        return new File(getDirectory(), name + extension);
+    }
+
+    private static void append(File file, byte[] data) throws IOException {
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+
+        try {
+            output.seek(output.length());
+            output.write(data);
+        } finally {
+            output.close();
+        }
+    }
+}
@@ -1,69 +1,179 @@
 'use strict';
 
 var React = require('react-native');
-var { DeviceEventEmitter } = React;
+var { AppRegistry, DeviceEventEmitter } = React;
 
 var NotificationModule = require('react-native').NativeModules.NotificationModule;
 
 // Warp the native module so we can do some pre/post processing to have a cleaner API.
 var Notification = {
     create: function(attributes = {}) {
-        return new Promise(function(resolve, reject) {
-            NotificationModule.rGetApplicationName(function(e) {}, function(applicationName) {
+        // Set defaults
+        if (!attributes.subject) attributes.subject = NotificationModule.applicationName;
+        attributes = encodeNativeNotification(attributes);
 
-                // Set defaults
-                if (!attributes.subject) attributes.subject = applicationName;
-                attributes = encodeNativeNotification(attributes);
+        return command('rCreate', [attributes.id, attributes], decodeNativeNotification);
+    },
 
-                NotificationModule.rCreate(attributes.id, attributes, reject, function(notification) {
-                    resolve(decodeNativeNotification(notification));
-                });
-            });
+    sync: function(notifications) {
+        var desired = notifications.map(function(attributes) {
+            attributes = Object.assign({}, attributes);
+
+            // Set defaults
+            if (!attributes.subject) attributes.subject = NotificationModule.applicationName;
+            return encodeNativeNotification(attributes);
         });
+
+        return command('rSync', [desired]);
+    },
+
+    registerTemplate: function(name, attributes) {
+        // The ticker text is derived once the overrides are merged in
+        attributes = encodeNativeNotification(Object.assign({}, attributes), true, false);
+
+        // Every notification created from the template has its own id
+        delete attributes.id;
+
+        return command('rRegisterTemplate', [name, attributes]);
+    },
+
+    createFromTemplate: function(id, name, overrides = {}) {
+        var attributes = encodeNativeNotification(Object.assign({}, overrides), false);
+
+        return command('rCreateFromTemplate', [id, name, attributes], decodeNativeNotification);
     },
 
     getIDs: function() {
-        return new Promise(function(resolve, reject) {
-            NotificationModule.rGetIDs(reject, resolve);
-        });
+        return command('rGetIDs', []);
     },
 
     find: function(id) {
-        return new Promise(function(resolve, reject) {
-            NotificationModule.rFind(id, reject, function(notification) {
-                resolve(decodeNativeNotification(notification));
+        return command('rFind', [id], decodeNativeNotification);
+    },
+
+    getUpcoming: function(from, to, limit) {
+        if (typeof from !== 'object') from = new Date(from);
+        if (typeof to !== 'object') to = new Date(to);
+        if (limit === undefined) limit = 100;
+
+        return command('rGetUpcoming', [from.getTime().toString(), to.getTime().toString(), limit], function(upcoming) {
+            return upcoming.map(function(item) {
+                return {
+                    id: item.id,
+                    fireAt: new Date(parseInt(item.fireAt)),
+                    notification: decodeNativeNotification(item.notification)
+                };
             });
         });
     },
 
     delete: function(id) {
-        return new Promise(function(resolve, reject) {
-            NotificationModule.rDelete(id, reject, function(notification) {
-                resolve(decodeNativeNotification(notification));
-            });
-        });
+        return command('rDelete', [id], decodeNativeNotification);
     },
 
     deleteAll: function() {
-        return new Promise(function(resolve, reject) {
-            NotificationModule.rDeleteAll(reject, resolve);
-        });
+        return command('rDeleteAll', []);
     },
 
     clear: function(id) {
-        return new Promise(function(resolve, reject) {
-            NotificationModule.rClear(id, reject, function(notification) {
-                resolve(decodeNativeNotification(notification));
+        return command('rClear', [id], decodeNativeNotification);
+    },
+
+    clearAll: function() {
+        return command('rClearAll', []);
+    },
+
+    getAlarmStats: function() {
+        return command('rGetAlarmStats', []);
+    },
+
+    getDeliveryCounts: function() {
+        return command('rGetDeliveryCounts', [], function(counts) {
+            return counts.map(function(count) {
+                return {
+                    id: count.id,
+                    fires: count.fires,
+                    lastFiredAt: new Date(parseInt(count.lastFiredAt))
+                };
             });
         });
     },
 
-    clearAll: function() {
-        return new Promise(function(resolve, reject) {
-            NotificationModule.rClearAll(reject, resolve);
+    setFloodControl: function(options) {
+        return command('rSetFloodControl', [options || {}]);
+    },
+
+    getPostingStats: function() {
+        return command('rGetPostingStats', []);
+    },
+
+    setDigest: function(key, options) {
+        options = Object.assign({}, options);
+
+        // Quiet hours are passed as 'HH:mm', in minutes of the day to the native module
+        ['quietStart', 'quietEnd'].forEach(function(field) {
+            if (typeof options[field] === 'string') {
+                var time = options[field].split(':');
+                options[field] = parseInt(time[0]) * 60 + parseInt(time[1] || 0);
+            }
+        });
+
+        return command('rSetDigest', [key, options]);
+    },
+
+    removeDigest: function(key) {
+        return command('rRemoveDigest', [key]);
+    },
+
+    getCreateStats: function() {
+        return command('rGetCreateStats', []);
+    },
+
+    collectGarbage: function() {
+        return command('rCollectGarbage', []);
+    },
+
+    getGarbageStats: function() {
+        return command('rGetGarbageStats', [], function(stats) {
+            stats.finishedAt = new Date(parseInt(stats.finishedAt));
+            return stats;
         });
     },
 
+    setLogLevel: function(level, redact = true) {
+        return command('rSetLogLevel', [level, redact]);
+    },
+
+    dumpTrace: function(filter) {
+        filter = Object.assign({}, filter);
+        if (filter.since !== undefined) {
+            if (typeof filter.since !== 'object') filter.since = new Date(filter.since);
+            filter.since = filter.since.getTime().toString();
+        }
+
+        return command('rDumpTrace', [filter], function(events) {
+            return events.map(function(event) {
+                return {
+                    time: new Date(parseInt(event.time)),
+                    id: event.id,
+                    event: event.event
+                };
+            });
+        });
+    },
+
+    setStoreFlushInterval: function(milliseconds) {
+        return command('rSetStoreFlushInterval', [milliseconds]);
+    },
+
+    benchmarkStore: function(sizes = [100, 1000, 10000], reads = 9) {
+        return command('rBenchmarkStore', [sizes, reads]);
+    },
+
+    getQueueStats: function() {
+        return command('rGetQueueStats', []);
+    },
+
     addListener: function(type, listener) {
         switch (type) {
             case 'press':
@@ -89,6 +199,19 @@ var Notification = {
         }
     },
 
+    // Run the action buttons in headless mode, while the app UI is not started
+    registerActionTask: function(task) {
+        AppRegistry.registerHeadlessTask('NotificationAction', function() {
+            return function(event) {
+                return Promise.resolve(task({
+                    id: event.id,
+                    action: event.action,
+                    payload: event.payload ? JSON.parse(event.payload) : null
+                }));
+            };
+        });
+    },
+
     removeAllListeners: function (type) {
         switch (type) {
             case 'press':
@@ -103,30 +226,50 @@ var Notification = {
 
 module.exports = Notification;
 
+var requestCount = 0;
+
+// Run a command on the queue of the native module. The Promise it returns can
+// be cancelled until the command starts, it is then rejected with E_CANCELLED.
+function command(method, args, map) {
+    var requestID = (++requestCount).toString();
+    var promise = NotificationModule[method].apply(NotificationModule, [requestID].concat(args));
+
+    if (map) promise = promise.then(map);
+
+    promise.cancel = function() {
+        return NotificationModule.rCancel((++requestCount).toString(), requestID);
+    };
+
+    return promise;
+}
+
 // Encode the JS notification to pass into the native model
-function encodeNativeNotification(attributes) {
+function encodeNativeNotification(attributes, withDefaults = true, withDerived = withDefaults) {
     if (typeof attributes === 'string') attributes = JSON.parse(attributes);
-    // Set defaults
-    if (!attributes.smallIcon) attributes.smallIcon = 'ic_launcher';
-    if (!attributes.id) attributes.id = parseInt(Math.random() * 100000);
-    if (!attributes.action) attributes.action = 'DEFAULT';
-    if (!attributes.payload) attributes.payload = {};
-    if (attributes.autoClear === undefined) attributes.autoClear = true;
-    if (attributes.tickerText === undefined) {
-        if (attributes.subject) {
-            attributes.tickerText = attributes.subject + ': ' + attributes.message;
-        } else {
-            attributes.tickerText = attributes.message;
+    // Set defaults, the overrides of a template take them from the template
+    if (withDefaults) {
+        if (!attributes.smallIcon) attributes.smallIcon = 'ic_launcher';
+        if (!attributes.id) attributes.id = parseInt(Math.random() * 100000);
+        if (!attributes.action) attributes.action = 'DEFAULT';
+        if (!attributes.payload) attributes.payload = {};
+        if (attributes.autoClear === undefined) attributes.autoClear = true;
+        if (withDerived && attributes.tickerText === undefined) {
+            if (attributes.subject) {
+                attributes.tickerText = attributes.subject + ': ' + attributes.message;
+            } else {
+                attributes.tickerText = attributes.message;
+            }
         }
-    }
 
-    if (attributes.priority === undefined) attributes.priority = 1;
-    if (attributes.sound === undefined) attributes.sound = 'default';
-    if (attributes.vibrate === undefined) attributes.vibrate = 'default';
-    if (attributes.lights === undefined) attributes.lights = 'default';
+        if (attributes.priority === undefined) attributes.priority = 1;
+        if (attributes.sound === undefined) attributes.sound = 'default';
+        if (attributes.vibrate === undefined) attributes.vibrate = 'default';
+        if (attributes.lights === undefined) attributes.lights = 'default';
+    }
 
-    attributes.delayed = (attributes.delay !== undefined);
-    attributes.scheduled = (attributes.sendAt !== undefined);
+    // Left unset in the overrides without a schedule, they keep the one of the template
+    if (withDefaults || attributes.delay !== undefined) attributes.delayed = (attributes.delay !== undefined);
+    if (withDefaults || attributes.sendAt !== undefined) attributes.scheduled = (attributes.sendAt !== undefined);
 
     // Ensure date are Dates
     if (attributes.sendAt && typeof attributes.sendAt !== 'object') attributes.sendAt = new Date(attributes.sendAt);
@@ -210,7 +353,7 @@ function encodeNativeNotification(attributes) {
     if (attributes.progress) attributes.progress = attributes.progress * 1000;
 
     // Stringify the payload
-    attributes.payload = JSON.stringify(attributes.payload);
+    if (attributes.payload !== undefined) attributes.payload = JSON.stringify(attributes.payload);
 
     return attributes;
 }